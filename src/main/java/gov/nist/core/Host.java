@@ -138,6 +138,10 @@ public class Host extends GenericObject {
 
     }
 
+    public int hashCode() {
+        return hostname == null ? 0 : hostname.hashCode();
+    }
+
     /**
      * get the HostName field
      *
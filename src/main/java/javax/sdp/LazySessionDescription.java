@@ -0,0 +1,438 @@
+/*
+ * Conditions Of Use
+ *
+ *  This software was developed by employees of the National Institute of
+ *  Standards and Technology (NIST), an agency of the Federal Government.
+ *  Pursuant to title 15 Untied States Code Section 105, works of NIST
+ *  employees are not subject to copyright protection in the United States
+ *  and are considered to be in the public domain.  As a result, a formal
+ *  license is not needed to use the software.
+ *
+ *  This software is provided by NIST as a service and is expressly
+ *  provided "AS IS."  NIST MAKES NO WARRANTY OF ANY KIND, EXPRESS, IMPLIED
+ *  OR STATUTORY, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTY OF
+ *  MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, NON-INFRINGEMENT
+ *  AND DATA ACCURACY.  NIST does not warrant or make any representations
+ *  regarding the use of the software or the results thereof, including but
+ *  not limited to the correctness, accuracy, reliability or usefulness of
+ *  the software.
+ *
+ *  Permission to use this software is contingent upon your acceptance
+ *  of the terms of this agreement
+ */
+package javax.sdp;
+
+import javax.sdp.fields.AttributeField;
+import javax.sdp.fields.ConnectionField;
+import javax.sdp.fields.SDPField;
+import javax.sdp.parser.SDPSessionParser;
+import java.text.ParseException;
+import java.util.List;
+
+/**
+ * SessionDescription that only parses what is asked for.
+ * <p/>
+ * Construction indexes the line offsets of the message and nothing else. The
+ * session connection, the m= lines, the connection of each media and its
+ * attributes are materialized one line at a time on demand, so a relay can
+ * read and rewrite c= and m= without building the whole description.
+ * toString() copies every line that was never materialized verbatim from the
+ * original message and encodes only the fields handed out.
+ * <p/>
+ * Any other SessionDescription method materializes the whole description,
+ * reusing the fields already handed out. From then on every call, toString()
+ * included, goes to that SessionDescriptionImpl.
+ * <p/>
+ * Lines are only checked when they are materialized: a malformed line is
+ * reported by the methods throwing SdpException, and as an
+ * IllegalStateException by the others.
+ */
+public class LazySessionDescription implements SessionDescription {
+
+    private final String message;
+    private transient SDPSessionParser parser;
+    private final int[] starts;
+    private final int[] ends;
+    private final SDPField[] fields;
+    private final int[] mediaLines;
+    private int connectionLine = -1;
+    private SessionDescriptionImpl description;
+
+    /**
+     * Costructs a new LazySessionDescription indexing the lines of the given message.
+     *
+     * @param message the sdp announce message
+     * @throws SdpParseException if there is no connection or no media line
+     */
+    public LazySessionDescription(String message) throws SdpParseException {
+        if (message == null) {
+            throw new SdpParseException(0, 0, "Failed to Parse Necessary Fields.");
+        }
+        this.message = message;
+
+        final int length = message.length();
+        int start = 0;
+        // Strip off leading junk.
+        while (start < length && message.charAt(start) <= ' ') {
+            start++;
+        }
+        int lines = 0;
+        int medias = 0;
+        boolean connection = false;
+        for (int i = start; i < length; i = SDPSessionParser.nextLine(message, SDPSessionParser.endOfLine(message, i))) {
+            lines++;
+            if (isField(i, 'm')) {
+                medias++;
+            } else if (isField(i, 'c')) {
+                connection = true;
+            }
+        }
+        if (!connection || medias == 0) {
+            throw new SdpParseException(0, 0, "Failed to Parse Necessary Fields.");
+        }
+
+        starts = new int[lines];
+        ends = new int[lines];
+        fields = new SDPField[lines];
+        mediaLines = new int[medias];
+        lines = 0;
+        medias = 0;
+        for (int i = start; i < length; i = SDPSessionParser.nextLine(message, ends[lines - 1])) {
+            starts[lines] = i;
+            ends[lines] = SDPSessionParser.endOfLine(message, i);
+            if (isField(i, 'm')) {
+                mediaLines[medias++] = lines;
+            } else if (isField(i, 'c') && medias == 0 && connectionLine == -1) {
+                connectionLine = lines;
+            }
+            lines++;
+        }
+    }
+
+    //**************************** Lazy access ****************************/
+
+    /**
+     * @return whether the whole description has been materialized
+     */
+    public boolean isMaterialized() {
+        return description != null;
+    }
+
+    /**
+     * @return the number of m= lines
+     */
+    public int getMediaCount() {
+        if (description != null) {
+            try {
+                final List<?> media = description.getMediaDescriptions(false);
+                return media == null ? 0 : media.size();
+            } catch (SdpException e) {
+                return 0;
+            }
+        }
+        return mediaLines.length;
+    }
+
+    /**
+     * Returns the m= field of the given media description.
+     *
+     * @param index position of the media description
+     * @return the media field
+     * @throws SdpParseException if the m= line is malformed
+     */
+    public Media getMedia(int index) throws SdpParseException {
+        if (description != null) {
+            return getMediaDescription(index).getMedia();
+        }
+        return (Media) field(mediaLines[index]);
+    }
+
+    /**
+     * Returns the connection in effect for the given media description: its
+     * own c= line, or the session one when it has none.
+     *
+     * @param index position of the media description
+     * @return the connection, null if there is none
+     * @throws SdpParseException if the c= line is malformed
+     */
+    public Connection getConnection(int index) throws SdpParseException {
+        if (description != null) {
+            final Connection connection = getMediaDescription(index).getConnection();
+            return connection != null ? connection : description.getConnection();
+        }
+        for (int i = mediaLines[index] + 1; i < mediaEnd(index); i++) {
+            if (isField(starts[i], 'c')) {
+                return (Connection) field(i);
+            }
+        }
+        return connectionLine == -1 ? null : (Connection) field(connectionLine);
+    }
+
+    /**
+     * Returns the value of an attribute of the given media description. The
+     * a= lines of the media are scanned in place, none of them is materialized.
+     *
+     * @param index position of the media description
+     * @param name  the attribute name
+     * @return the attribute value, null if absent or if the attribute has no value
+     * @throws SdpParseException if the attribute field is malformed
+     */
+    public String getAttribute(int index, String name) throws SdpParseException {
+        if (description != null) {
+            return getMediaDescription(index).getAttribute(name);
+        }
+        final int nameLength = name.length();
+        for (int i = mediaLines[index] + 1; i < mediaEnd(index); i++) {
+            final int start = starts[i];
+            if (fields[i] != null) {
+                if (fields[i] instanceof AttributeField && name.equals(((AttributeField) fields[i]).getName())) {
+                    return ((AttributeField) fields[i]).getValue();
+                }
+            } else if (isField(start, 'a') && message.startsWith(name, start + 2)
+                    && start + 2 + nameLength < ends[i] && message.charAt(start + 2 + nameLength) == ':') {
+                return message.substring(start + 3 + nameLength, ends[i]).trim();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Materializes the whole description. Fields already handed out stay part of it.
+     *
+     * @return the materialized description
+     * @throws SdpParseException if any line is malformed
+     */
+    public SessionDescriptionImpl getSessionDescription() throws SdpParseException {
+        if (description == null) {
+            final SessionDescriptionImpl retval = new SessionDescriptionImpl();
+            for (int i = 0; i < fields.length; i++) {
+                final SDPField sdpField = field(i);
+                if (sdpField != null) {
+                    try {
+                        retval.addField(sdpField);
+                    } catch (ParseException e) {
+                        throw new SdpParseException(i + 1, e.getErrorOffset(), e.getMessage(), e);
+                    }
+                }
+            }
+            description = retval;
+        }
+        return description;
+    }
+
+    private MediaDescription getMediaDescription(int index) throws SdpParseException {
+        try {
+            return (MediaDescription) description.getMediaDescriptions(false).get(index);
+        } catch (SdpParseException e) {
+            throw e;
+        } catch (SdpException e) {
+            throw new SdpParseException(0, 0, e.getMessage(), e);
+        }
+    }
+
+    private boolean isField(int start, char type) {
+        return message.charAt(start) == type && start + 1 < message.length() && message.charAt(start + 1) == '=';
+    }
+
+    private int mediaEnd(int index) {
+        return index + 1 < mediaLines.length ? mediaLines[index + 1] : fields.length;
+    }
+
+    private SDPField field(int line) throws SdpParseException {
+        if (fields[line] == null) {
+            if (parser == null) {
+                parser = new SDPSessionParser(message);
+            }
+            try {
+                fields[line] = parser.parseField(starts[line], ends[line]);
+            } catch (ParseException e) {
+                throw new SdpParseException(line + 1, e.getErrorOffset(), "Invalid field at line " + (line + 1)
+                        + " \"" + message.substring(starts[line], ends[line]) + "\": " + e.getMessage(), e);
+            }
+        }
+        return fields[line];
+    }
+
+    private SessionDescriptionImpl materialize() {
+        try {
+            return getSessionDescription();
+        } catch (SdpParseException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    //**************************** SessionDescription ****************************/
+
+    public Object clone() throws CloneNotSupportedException {
+        try {
+            return new LazySessionDescription(toString());
+        } catch (SdpParseException e) {
+            throw new CloneNotSupportedException();
+        }
+    }
+
+    public Connection getConnection() {
+        if (description != null) {
+            return description.getConnection();
+        }
+        if (connectionLine == -1) {
+            return null;
+        }
+        try {
+            return (Connection) field(connectionLine);
+        } catch (SdpParseException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    public void setConnection(Connection conn) throws SdpException {
+        if (description == null && connectionLine != -1 && conn instanceof ConnectionField) {
+            fields[connectionLine] = (ConnectionField) conn;
+        } else {
+            getSessionDescription().setConnection(conn);
+        }
+    }
+
+    public Version getVersion() {
+        return materialize().getVersion();
+    }
+
+    public void setVersion(Version v) throws SdpException {
+        getSessionDescription().setVersion(v);
+    }
+
+    public Origin getOrigin() {
+        return materialize().getOrigin();
+    }
+
+    public void setOrigin(Origin origin) throws SdpException {
+        getSessionDescription().setOrigin(origin);
+    }
+
+    public SessionName getSessionName() {
+        return materialize().getSessionName();
+    }
+
+    public void setSessionName(SessionName sessionName) throws SdpException {
+        getSessionDescription().setSessionName(sessionName);
+    }
+
+    public Info getInfo() {
+        return materialize().getInfo();
+    }
+
+    public void setInfo(Info i) throws SdpException {
+        getSessionDescription().setInfo(i);
+    }
+
+    public URI getURI() {
+        return materialize().getURI();
+    }
+
+    public void setURI(URI uri) throws SdpException {
+        getSessionDescription().setURI(uri);
+    }
+
+    public List getEmails(boolean create) throws SdpParseException {
+        return getSessionDescription().getEmails(create);
+    }
+
+    public void setEmails(List emails) throws SdpException {
+        getSessionDescription().setEmails(emails);
+    }
+
+    public List getPhones(boolean create) throws SdpException {
+        return getSessionDescription().getPhones(create);
+    }
+
+    public void setPhones(List phones) throws SdpException {
+        getSessionDescription().setPhones(phones);
+    }
+
+    public List getTimeDescriptions(boolean create) throws SdpException {
+        return getSessionDescription().getTimeDescriptions(create);
+    }
+
+    public void setTimeDescriptions(List times) throws SdpException {
+        getSessionDescription().setTimeDescriptions(times);
+    }
+
+    public List getZoneAdjustments(boolean create) throws SdpException {
+        return getSessionDescription().getZoneAdjustments(create);
+    }
+
+    public void setZoneAdjustments(List zoneAdjustments) throws SdpException {
+        getSessionDescription().setZoneAdjustments(zoneAdjustments);
+    }
+
+    public List getBandwidths(boolean create) {
+        return materialize().getBandwidths(create);
+    }
+
+    public void setBandwidths(List bandwidths) throws SdpException {
+        getSessionDescription().setBandwidths(bandwidths);
+    }
+
+    public int getBandwidth(String name) throws SdpParseException {
+        return getSessionDescription().getBandwidth(name);
+    }
+
+    public void setBandwidth(String name, int value) throws SdpException {
+        getSessionDescription().setBandwidth(name, value);
+    }
+
+    public void removeBandwidth(String name) {
+        materialize().removeBandwidth(name);
+    }
+
+    public Key getKey() {
+        return materialize().getKey();
+    }
+
+    public void setKey(Key key) throws SdpException {
+        getSessionDescription().setKey(key);
+    }
+
+    public String getAttribute(String name) throws SdpParseException {
+        return getSessionDescription().getAttribute(name);
+    }
+
+    public List getAttributes(boolean create) {
+        return materialize().getAttributes(create);
+    }
+
+    public void removeAttribute(String name) {
+        materialize().removeAttribute(name);
+    }
+
+    public void setAttribute(String name, String value) throws SdpException {
+        getSessionDescription().setAttribute(name, value);
+    }
+
+    public void setAttributes(List attributes) throws SdpException {
+        getSessionDescription().setAttributes(attributes);
+    }
+
+    public List getMediaDescriptions(boolean create) throws SdpException {
+        return getSessionDescription().getMediaDescriptions(create);
+    }
+
+    public void setMediaDescriptions(List mediaDescriptions) throws SdpException {
+        getSessionDescription().setMediaDescriptions(mediaDescriptions);
+    }
+
+    public String toString() {
+        if (description != null) {
+            return description.toString();
+        }
+        final StringBuilder encBuff = new StringBuilder(message.length() + 32);
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] != null) {
+                encBuff.append(fields[i].encode());
+            } else {
+                encBuff.append(message, starts[i], i + 1 < fields.length ? starts[i + 1] : message.length());
+            }
+        }
+        return encBuff.toString();
+    }
+}
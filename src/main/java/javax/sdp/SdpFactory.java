@@ -26,7 +26,7 @@ package javax.sdp;
 import org.zoolu.sip.provider.SipProviderInfoInterface;
 
 import javax.sdp.fields.*;
-import javax.sdp.parser.SDPAnnounceParser;
+import javax.sdp.parser.SDPSessionParser;
 import java.net.URL;
 import java.text.ParseException;
 import java.util.*;
@@ -138,15 +138,28 @@ public class SdpFactory {
      */
     public SessionDescription createSessionDescription(String s)
             throws SdpParseException {
+        SDPSessionParser sdpParser = new SDPSessionParser(s);
         try {
-
-            SDPAnnounceParser sdpParser = new SDPAnnounceParser(s);
             return sdpParser.parse();
         } catch (ParseException e) {
-            throw new SdpParseException(0, 0, "Could not parse message");
+            throw new SdpParseException(sdpParser.getErrorLine(), e.getErrorOffset(),
+                    "Could not parse message: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Creates a SessionDescription that only parses the fields asked for.
+     *
+     * @param s s - the sdp message that is to be parsed.
+     * @return a LazySessionDescription indexing the given message.
+     * @throws SdpParseException SdpParseException - if the message lacks connection or media lines.
+     * @see LazySessionDescription
+     */
+    public LazySessionDescription createLazySessionDescription(String s)
+            throws SdpParseException {
+        return new LazySessionDescription(s);
+    }
+
     /**
      * Returns Bandwidth object with the specified values.
      *
@@ -0,0 +1,309 @@
+/*
+ * Conditions Of Use
+ *
+ *  This software was developed by employees of the National Institute of
+ *  Standards and Technology (NIST), an agency of the Federal Government.
+ *  Pursuant to title 15 Untied States Code Section 105, works of NIST
+ *  employees are not subject to copyright protection in the United States
+ *  and are considered to be in the public domain.  As a result, a formal
+ *  license is not needed to use the software.
+ *
+ *  This software is provided by NIST as a service and is expressly
+ *  provided "AS IS."  NIST MAKES NO WARRANTY OF ANY KIND, EXPRESS, IMPLIED
+ *  OR STATUTORY, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTY OF
+ *  MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, NON-INFRINGEMENT
+ *  AND DATA ACCURACY.  NIST does not warrant or make any representations
+ *  regarding the use of the software or the results thereof, including but
+ *  not limited to the correctness, accuracy, reliability or usefulness of
+ *  the software.
+ *
+ *  Permission to use this software is contingent upon your acceptance
+ *  of the terms of this agreement
+ */
+package javax.sdp;
+
+import org.zoolu.sip.header.ContentTypeHeader;
+import org.zoolu.sip.message.BaseMessage;
+
+import javax.sdp.parser.SDPSessionParser;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rewrites the transport addresses of a raw SDP body, as a media relay
+ * anchoring a call does, without parsing it into a SessionDescription.
+ * <p/>
+ * The substitutions are set first: the connection address of the session or
+ * of a media, the port of an m= line, the port of its a=rtcp line and the
+ * a=candidate lines replacing its own. The body is then rewritten in a single
+ * pass: every line left alone is copied verbatim, the others are rebuilt from
+ * their original text.
+ * <p/>
+ * The session address applies to the session c= line and to every media c=
+ * line, unless the media has an address of its own. A multicast /ttl and /number
+ * of addresses suffix of a rewritten c= line is kept. A media address given for
+ * a media without a c= line inserts one after its m= and i= lines. The a=rtcp
+ * address, when present, follows the address of its media. A rewriter keeps
+ * its substitutions, so it may be reused for several bodies but is not
+ * thread safe.
+ */
+public class SdpRewriter {
+
+    private static final String CRLF = "\r\n";
+
+    private String connectionAddress;
+    private final List<MediaRewrite> media = new ArrayList<MediaRewrite>();
+
+    /**
+     * Sets the address of the session c= line and of the media c= lines.
+     *
+     * @param address the new connection address, null to keep the original ones
+     */
+    public void setConnectionAddress(String address) {
+        this.connectionAddress = address;
+    }
+
+    /**
+     * Sets the connection address of a media.
+     *
+     * @param index   position of the m= line
+     * @param address the new connection address, null to use the session one
+     */
+    public void setConnectionAddress(int index, String address) {
+        media(index).address = address;
+    }
+
+    /**
+     * Sets the port of an m= line. A port count is kept.
+     *
+     * @param index position of the m= line
+     * @param port  the new port, -1 to keep the original one
+     */
+    public void setPort(int index, int port) {
+        media(index).port = port;
+    }
+
+    /**
+     * Sets the port of the a=rtcp line of a media.
+     *
+     * @param index position of the m= line
+     * @param port  the new rtcp port, -1 to keep the original one
+     */
+    public void setRtcpPort(int index, int port) {
+        media(index).rtcpPort = port;
+    }
+
+    /**
+     * Replaces the a=candidate lines of a media. Media without candidates get none.
+     *
+     * @param index      position of the m= line
+     * @param candidates the candidate values, without "a=candidate:", null to keep the original ones
+     */
+    public void setCandidates(int index, String... candidates) {
+        media(index).candidates = candidates;
+    }
+
+    private MediaRewrite media(int index) {
+        while (media.size() <= index) {
+            media.add(new MediaRewrite());
+        }
+        return media.get(index);
+    }
+
+    private MediaRewrite getMedia(int index) {
+        return index >= 0 && index < media.size() ? media.get(index) : null;
+    }
+
+    private String getAddress(int index) {
+        final MediaRewrite m = getMedia(index);
+        return m != null && m.address != null ? m.address : connectionAddress;
+    }
+
+    //**************************** Rewriting ****************************/
+
+    /**
+     * Rewrites the body of a message and updates its Content-Length.
+     * The Content-Type header, parameters included, is kept.
+     *
+     * @param message the message
+     * @return whether the message had a body to rewrite
+     */
+    public boolean rewrite(BaseMessage message) {
+        final String body = message.getBody();
+        if (body == null) {
+            return false;
+        }
+        final ContentTypeHeader contentType = message.getContentTypeHeader();
+        message.setBody(contentType != null ? contentType.getContentType() : "application/sdp", rewrite(body));
+        if (contentType != null) {
+            message.setHeader(contentType);
+        }
+        return true;
+    }
+
+    /**
+     * @param body the sdp announce message
+     * @return the rewritten message
+     */
+    public String rewrite(String body) {
+        final StringBuilder out = new StringBuilder(body.length() + 64);
+        final int length = body.length();
+        int index = -1;
+        boolean candidates = false;
+        boolean pendingConnection = false;
+
+        int start = 0;
+        while (start < length) {
+            final int eol = SDPSessionParser.endOfLine(body, start);
+            final int next = SDPSessionParser.nextLine(body, eol);
+            final char type = eol - start > 1 && body.charAt(start + 1) == '=' ? body.charAt(start) : 0;
+
+            if (pendingConnection && type != 'i') {
+                appendConnection(out, "IN", getAddress(index), "", CRLF);
+                pendingConnection = false;
+            }
+
+            switch (type) {
+                case 'm':
+                    index++;
+                    candidates = false;
+                    final MediaRewrite m = getMedia(index);
+                    if (m != null && m.address != null && !hasConnection(body, next)) {
+                        pendingConnection = true;
+                    }
+                    if (m != null && m.port != -1) {
+                        appendMedia(out, body, start, eol, m.port);
+                        out.append(body, eol, next);
+                        break;
+                    }
+                    out.append(body, start, next);
+                    break;
+                case 'c':
+                    final String address = index == -1 ? connectionAddress : getAddress(index);
+                    if (address != null) {
+                        // c=<nettype> <addrtype> <connection-address>[/<ttl>][/<number of addresses>]
+                        final int nettype = skipSPorHT(body, start + 2, eol);
+                        final int nettypeEnd = token(body, nettype, eol);
+                        final int addressStart = skipSPorHT(body, token(body, skipSPorHT(body, nettypeEnd, eol), eol), eol);
+                        final int addressEnd = token(body, addressStart, eol);
+                        final int slash = body.indexOf('/', addressStart);
+                        final String suffix = slash != -1 && slash < addressEnd ? body.substring(slash, addressEnd) : "";
+                        appendConnection(out, body.substring(nettype, nettypeEnd), address, suffix,
+                                body.substring(eol, next));
+                        break;
+                    }
+                    out.append(body, start, next);
+                    break;
+                case 'a':
+                    if (index != -1 && body.startsWith("a=rtcp:", start)) {
+                        appendRtcp(out, body, start, eol, index);
+                        out.append(body, eol, next);
+                        break;
+                    }
+                    final MediaRewrite c = getMedia(index);
+                    if (c != null && c.candidates != null && body.startsWith("a=candidate:", start)) {
+                        if (!candidates) {
+                            for (String candidate : c.candidates) {
+                                out.append("a=candidate:").append(candidate).append(CRLF);
+                            }
+                            candidates = true;
+                        }
+                        break;
+                    }
+                    out.append(body, start, next);
+                    break;
+                default:
+                    out.append(body, start, next);
+            }
+            start = next;
+        }
+        if (pendingConnection) {
+            if (out.length() > 0 && out.charAt(out.length() - 1) != '\n' && out.charAt(out.length() - 1) != '\r') {
+                out.append(CRLF);
+            }
+            appendConnection(out, "IN", getAddress(index), "", CRLF);
+        }
+        return out.toString();
+    }
+
+    /**
+     * @return whether a c= line follows before the next m= line
+     */
+    private static boolean hasConnection(String body, int start) {
+        final int length = body.length();
+        while (start < length) {
+            if (start + 1 < length && body.charAt(start + 1) == '=') {
+                if (body.charAt(start) == 'c') {
+                    return true;
+                } else if (body.charAt(start) == 'm') {
+                    return false;
+                }
+            }
+            start = SDPSessionParser.nextLine(body, SDPSessionParser.endOfLine(body, start));
+        }
+        return false;
+    }
+
+    private static void appendConnection(StringBuilder out, String nettype, String address, String suffix,
+                                         String eol) {
+        out.append("c=").append(nettype).append(' ').append(addressType(address)).append(' ').append(address)
+                .append(suffix).append(eol);
+    }
+
+    private static void appendMedia(StringBuilder out, String body, int start, int eol, int port) {
+        // m=<media> <port>[/<number of ports>] <proto> <fmt> ...
+        final int media = skipSPorHT(body, start + 2, eol);
+        final int portStart = skipSPorHT(body, token(body, media, eol), eol);
+        int portEnd = portStart;
+        while (portEnd < eol && Character.isDigit(body.charAt(portEnd))) {
+            portEnd++;
+        }
+        out.append(body, start, portStart).append(port).append(body, portEnd, eol);
+    }
+
+    private void appendRtcp(StringBuilder out, String body, int start, int eol, int index) {
+        // a=rtcp:<port> [<nettype> <addrtype> <connection-address>]
+        final MediaRewrite m = getMedia(index);
+        final String address = getAddress(index);
+        final int portStart = skipSPorHT(body, start + 7, eol);
+        final int portEnd = token(body, portStart, eol);
+        out.append(body, start, portStart);
+        if (m != null && m.rtcpPort != -1) {
+            out.append(m.rtcpPort);
+        } else {
+            out.append(body, portStart, portEnd);
+        }
+        final int nettype = skipSPorHT(body, portEnd, eol);
+        if (address == null || nettype == eol) {
+            out.append(body, portEnd, eol);
+        } else {
+            out.append(' ').append(body, nettype, token(body, nettype, eol)).append(' ').append(addressType(address))
+                    .append(' ').append(address);
+        }
+    }
+
+    private static String addressType(String address) {
+        return address.indexOf(':') != -1 ? "IP6" : "IP4";
+    }
+
+    private static int skipSPorHT(String body, int i, int eol) {
+        while (i < eol && (body.charAt(i) == ' ' || body.charAt(i) == '\t')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int token(String body, int i, int eol) {
+        while (i < eol && body.charAt(i) != ' ' && body.charAt(i) != '\t') {
+            i++;
+        }
+        return i;
+    }
+
+    private static class MediaRewrite {
+        String address;
+        int port = -1;
+        int rtcpPort = -1;
+        String[] candidates;
+    }
+}
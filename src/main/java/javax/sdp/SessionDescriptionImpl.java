@@ -115,12 +115,10 @@ public class SessionDescriptionImpl implements SessionDescription {
             this.setInfo((Info) otherInfo.clone());
         }
 
-        // URI field requires deep copy
+        // URI field, URL and String are immutable
         URIField otherUriField = (URIField) otherSessionDescription.getURI();
         if (otherUriField != null) {
-            URIField newUF = new URIField();
-            newUF.setURI(otherUriField.toString());
-            this.setURI(newUF);
+            this.setURI(new URIField(otherUriField));
         }
 
         // OK to clone the connection field, class already does a deep copy
@@ -248,25 +246,8 @@ public class SessionDescriptionImpl implements SessionDescription {
                     // Copy the media field
                     MediaField otherMediaField = otherMediaDescription.getMediaField();
                     if (otherMediaField != null) {
-                        // Media field clone() makes a shallow copy, so don't use clone()
-                        MediaField newMF = new MediaField();
-                        newMF.setMedia(otherMediaField.getMedia());
-                        newMF.setPort(otherMediaField.getPort());
-                        newMF.setNports(otherMediaField.getNports());
-                        newMF.setProto(otherMediaField.getProto());
-                        List otherFormats = otherMediaField.getFormats();
-                        if (otherFormats != null) {
-                            List newFormats = new ArrayList();
-                            for (Object otherFormat1 : otherFormats) {
-                                Object otherFormat = otherFormat1;
-                                if (otherFormat != null) {
-                                    // Convert all format objects to strings in order to avoid reflection
-                                    newFormats.add(String.valueOf(otherFormat));
-                                }
-                            }
-                            newMF.setFormats(newFormats);
-                        }
-                        newMD.setMedia(newMF);
+                        // MediaField copies its formats list
+                        newMD.setMedia(new MediaField(otherMediaField));
                     }
 
                     // Copy the information field (it's a shallow object, ok to clone)
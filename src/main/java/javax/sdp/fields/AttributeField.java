@@ -49,6 +49,18 @@ public class AttributeField extends SDPField implements javax.sdp.Attribute {
         super(ATTRIBUTE_FIELD);
     }
 
+    /**
+     * Costructs a deep copy of an AttributeField.
+     *
+     * @param other the field to copy
+     */
+    public AttributeField(AttributeField other) {
+        super(other);
+        if (other.attribute != null) {
+            attribute = (NameValue) other.attribute.clone();
+        }
+    }
+
     /**
      * Set the attribute member
      *
@@ -188,19 +200,31 @@ public class AttributeField extends SDPField implements javax.sdp.Attribute {
     }
 
     public Object clone() {
-        AttributeField retval = (AttributeField) super.clone();
-        if (this.attribute != null) {
-            retval.attribute = (NameValue) this.attribute.clone();
-        }
-        return retval;
+        return new AttributeField(this);
     }
 
+    /**
+     * Attribute names are compared ignoring case, values exactly.
+     */
     public boolean equals(Object that) {
         if (!(that instanceof AttributeField)) {
             return false;
         }
         AttributeField other = (AttributeField) that;
-        return other.getAttribute().getName().equalsIgnoreCase(this.getAttribute().getName()) &&
-                this.getAttribute().getValueAsObject().equals(other.getAttribute().getValueAsObject());
+        if (attribute == null || other.attribute == null) {
+            return attribute == other.attribute;
+        }
+        String name = attribute.getName();
+        String otherName = other.attribute.getName();
+        return (name == null ? otherName == null : name.equalsIgnoreCase(otherName))
+                && equal(attribute.getValueAsObject(), other.attribute.getValueAsObject());
+    }
+
+    public int hashCode() {
+        if (attribute == null) {
+            return 0;
+        }
+        String name = attribute.getName();
+        return 31 * (name == null ? 0 : name.toLowerCase().hashCode()) + hash(attribute.getValueAsObject());
     }
 }
@@ -46,6 +46,17 @@ public class BandwidthField extends SDPField implements javax.sdp.BandWidth {
         super(SDPFieldNames.BANDWIDTH_FIELD);
     }
 
+    /**
+     * Costructs a new copy of a BandwidthField.
+     *
+     * @param other the field to copy
+     */
+    public BandwidthField(BandwidthField other) {
+        super(other);
+        bwtype = other.bwtype;
+        bandwidth = other.bandwidth;
+    }
+
     public String getBwtype() {
         return bwtype;
     }
@@ -130,4 +141,19 @@ public class BandwidthField extends SDPField implements javax.sdp.BandWidth {
         setBandwidth(value);
     }
 
+    public Object clone() {
+        return new BandwidthField(this);
+    }
+
+    public boolean equals(Object that) {
+        if (!(that instanceof BandwidthField)) {
+            return false;
+        }
+        BandwidthField other = (BandwidthField) that;
+        return bandwidth == other.bandwidth && equal(bwtype, other.bwtype);
+    }
+
+    public int hashCode() {
+        return 31 * hash(bwtype) + bandwidth;
+    }
 }
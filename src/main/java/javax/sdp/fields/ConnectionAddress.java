@@ -40,6 +40,23 @@ public class ConnectionAddress extends SDPObject {
     protected int ttl;
     protected int port;
 
+    public ConnectionAddress() {
+    }
+
+    /**
+     * Costructs a deep copy of a ConnectionAddress.
+     *
+     * @param other the object to copy
+     */
+    public ConnectionAddress(ConnectionAddress other) {
+        super(other);
+        if (other.address != null) {
+            address = (Host) other.address.clone();
+        }
+        ttl = other.ttl;
+        port = other.port;
+    }
+
     public Host getAddress() {
         return address;
     }
@@ -99,12 +116,19 @@ public class ConnectionAddress extends SDPObject {
     }
 
     public Object clone() {
-        ConnectionAddress retval = (ConnectionAddress) super.clone();
-        if (this.address != null) {
-            retval.address = (Host) this.address.clone();
+        return new ConnectionAddress(this);
+    }
+
+    public boolean equals(Object that) {
+        if (!(that instanceof ConnectionAddress)) {
+            return false;
         }
-        return retval;
+        ConnectionAddress other = (ConnectionAddress) that;
+        return ttl == other.ttl && port == other.port && equal(address, other.address);
     }
 
+    public int hashCode() {
+        return 31 * (31 * hash(address) + ttl) + port;
+    }
 }
 
@@ -47,6 +47,20 @@ public class ConnectionField extends SDPField implements javax.sdp.Connection {
         super(SDPFieldNames.CONNECTION_FIELD);
     }
 
+    /**
+     * Costructs a deep copy of a ConnectionField.
+     *
+     * @param other the field to copy
+     */
+    public ConnectionField(ConnectionField other) {
+        super(other);
+        nettype = other.nettype;
+        addrtype = other.addrtype;
+        if (other.address != null) {
+            address = new ConnectionAddress(other.address);
+        }
+    }
+
     public String getNettype() {
         return nettype;
     }
@@ -204,11 +218,18 @@ public class ConnectionField extends SDPField implements javax.sdp.Connection {
     }
 
     public Object clone() {
-        ConnectionField retval = (ConnectionField) super.clone();
-        if (this.address != null) {
-            retval.address = (ConnectionAddress) this.address.clone();
+        return new ConnectionField(this);
+    }
+
+    public boolean equals(Object that) {
+        if (!(that instanceof ConnectionField)) {
+            return false;
         }
-        return retval;
+        ConnectionField other = (ConnectionField) that;
+        return equal(nettype, other.nettype) && equal(addrtype, other.addrtype) && equal(address, other.address);
     }
 
+    public int hashCode() {
+        return 31 * (31 * hash(nettype) + hash(addrtype)) + hash(address);
+    }
 }
@@ -38,6 +38,20 @@ public class Email extends SDPObject {
     protected String userName;
     protected String hostName;
 
+    public Email() {
+    }
+
+    /**
+     * Costructs a new copy of a Email.
+     *
+     * @param other the object to copy
+     */
+    public Email(Email other) {
+        super(other);
+        userName = other.userName;
+        hostName = other.hostName;
+    }
+
     public String getUserName() {
         return userName;
     }
@@ -73,4 +87,19 @@ public class Email extends SDPObject {
         return userName + Separators.AT + hostName;
     }
 
+    public Object clone() {
+        return new Email(this);
+    }
+
+    public boolean equals(Object that) {
+        if (!(that instanceof Email)) {
+            return false;
+        }
+        Email other = (Email) that;
+        return equal(userName, other.userName) && equal(hostName, other.hostName);
+    }
+
+    public int hashCode() {
+        return 31 * hash(userName) + hash(hostName);
+    }
 }
@@ -38,6 +38,22 @@ public class EmailAddress extends SDPObject {
     protected String displayName;
     protected Email email;
 
+    public EmailAddress() {
+    }
+
+    /**
+     * Costructs a deep copy of a EmailAddress.
+     *
+     * @param other the object to copy
+     */
+    public EmailAddress(EmailAddress other) {
+        super(other);
+        displayName = other.displayName;
+        if (other.email != null) {
+            email = new Email(other.email);
+        }
+    }
+
     public String getDisplayName() {
         return displayName;
     }
@@ -83,11 +99,18 @@ public class EmailAddress extends SDPObject {
     }
 
     public Object clone() {
-        EmailAddress retval = (EmailAddress) super.clone();
-        if (this.email != null) {
-            retval.email = (Email) this.email.clone();
+        return new EmailAddress(this);
+    }
+
+    public boolean equals(Object that) {
+        if (!(that instanceof EmailAddress)) {
+            return false;
         }
-        return retval;
+        EmailAddress other = (EmailAddress) that;
+        return equal(displayName, other.displayName) && equal(email, other.email);
     }
 
+    public int hashCode() {
+        return 31 * hash(displayName) + hash(email);
+    }
 }
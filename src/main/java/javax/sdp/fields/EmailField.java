@@ -46,6 +46,18 @@ public class EmailField extends SDPField implements javax.sdp.EMail {
         emailAddress = new EmailAddress();
     }
 
+    /**
+     * Costructs a deep copy of a EmailField.
+     *
+     * @param other the field to copy
+     */
+    public EmailField(EmailField other) {
+        super(other);
+        if (other.emailAddress != null) {
+            emailAddress = new EmailAddress(other.emailAddress);
+        }
+    }
+
     public EmailAddress getEmailAddress() {
         return emailAddress;
     }
@@ -102,11 +114,18 @@ public class EmailField extends SDPField implements javax.sdp.EMail {
     }
 
     public Object clone() {
-        EmailField retval = (EmailField) super.clone();
-        if (this.emailAddress != null) {
-            retval.emailAddress = (EmailAddress) this.emailAddress.clone();
+        return new EmailField(this);
+    }
+
+    public boolean equals(Object that) {
+        if (!(that instanceof EmailField)) {
+            return false;
         }
-        return retval;
+        EmailField other = (EmailField) that;
+        return equal(emailAddress, other.emailAddress);
     }
 
+    public int hashCode() {
+        return hash(emailAddress);
+    }
 }
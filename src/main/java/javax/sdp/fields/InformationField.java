@@ -45,6 +45,16 @@ public class InformationField extends SDPField implements javax.sdp.Info {
         super(INFORMATION_FIELD);
     }
 
+    /**
+     * Costructs a new copy of a InformationField.
+     *
+     * @param other the field to copy
+     */
+    public InformationField(InformationField other) {
+        super(other);
+        information = other.information;
+    }
+
     public String getInformation() {
         return information;
     }
@@ -86,5 +96,20 @@ public class InformationField extends SDPField implements javax.sdp.Info {
         }
     }
 
+    public Object clone() {
+        return new InformationField(this);
+    }
+
+    public boolean equals(Object that) {
+        if (!(that instanceof InformationField)) {
+            return false;
+        }
+        InformationField other = (InformationField) that;
+        return equal(information, other.information);
+    }
+
+    public int hashCode() {
+        return hash(information);
+    }
 }
 
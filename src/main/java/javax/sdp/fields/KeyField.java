@@ -46,6 +46,17 @@ public class KeyField extends SDPField implements javax.sdp.Key {
         super(KEY_FIELD);
     }
 
+    /**
+     * Costructs a new copy of a KeyField.
+     *
+     * @param other the field to copy
+     */
+    public KeyField(KeyField other) {
+        super(other);
+        type = other.type;
+        keyData = other.keyData;
+    }
+
     public String getType() {
         return type;
     }
@@ -142,5 +153,21 @@ public class KeyField extends SDPField implements javax.sdp.Key {
             setKeyData(key);
         }
     }
+
+    public Object clone() {
+        return new KeyField(this);
+    }
+
+    public boolean equals(Object that) {
+        if (!(that instanceof KeyField)) {
+            return false;
+        }
+        KeyField other = (KeyField) that;
+        return equal(type, other.type) && equal(keyData, other.keyData);
+    }
+
+    public int hashCode() {
+        return 31 * hash(type) + hash(keyData);
+    }
 }
 
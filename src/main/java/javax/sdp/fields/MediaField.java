@@ -31,7 +31,6 @@ import javax.sdp.Media;
 import javax.sdp.SdpException;
 import javax.sdp.SdpParseException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /**
@@ -53,6 +52,26 @@ public class MediaField extends SDPField implements Media {
         formats = new ArrayList();
     }
 
+    /**
+     * Costructs a deep copy of a MediaField.
+     *
+     * @param other the field to copy
+     */
+    public MediaField(MediaField other) {
+        super(other);
+        media = other.media;
+        port = other.port;
+        nports = other.nports;
+        proto = other.proto;
+        if (other.formats != null) {
+            List<Object> copy = new ArrayList<Object>(other.formats.size());
+            for (Object format : other.formats) {
+                copy.add(format instanceof SDPObject ? ((SDPObject) format).clone() : format);
+            }
+            formats = copy;
+        }
+    }
+
     public String getMedia() {
         return media;
     }
@@ -289,12 +308,20 @@ public class MediaField extends SDPField implements Media {
     }
 
     public Object clone() {
-        MediaField retval = (MediaField) super.clone();
-        if (this.formats != null) {
-            retval.formats = new ArrayList();
-            Collections.copy(retval.formats, this.formats);
+        return new MediaField(this);
+    }
+
+    public boolean equals(Object that) {
+        if (!(that instanceof MediaField)) {
+            return false;
         }
-        return retval;
+        MediaField other = (MediaField) that;
+        return port == other.port && nports == other.nports && equal(media, other.media) && equal(proto, other.proto)
+                && equal(formats, other.formats);
+    }
+
+    public int hashCode() {
+        return 31 * (31 * (31 * hash(media) + port) + hash(proto)) + hash(formats);
     }
 }
 
@@ -52,6 +52,23 @@ public class OriginField extends SDPField implements javax.sdp.Origin {
         super(ORIGIN_FIELD);
     }
 
+    /**
+     * Costructs a deep copy of a OriginField.
+     *
+     * @param other the field to copy
+     */
+    public OriginField(OriginField other) {
+        super(other);
+        username = other.username;
+        sessIdString = other.sessIdString;
+        sessVersionString = other.sessVersionString;
+        nettype = other.nettype;
+        addrtype = other.addrtype;
+        if (other.address != null) {
+            address = (Host) other.address.clone();
+        }
+    }
+
     /**
      * Returns the name of the session originator.
      *
@@ -348,12 +365,21 @@ public class OriginField extends SDPField implements javax.sdp.Origin {
     }
 
     public Object clone() {
-        OriginField retval = (OriginField) super.clone();
-        if (this.address != null) {
-            retval.address = (Host) this.address.clone();
+        return new OriginField(this);
+    }
+
+    public boolean equals(Object that) {
+        if (!(that instanceof OriginField)) {
+            return false;
         }
-        return retval;
+        OriginField other = (OriginField) that;
+        return equal(sessIdString, other.sessIdString) && equal(sessVersionString, other.sessVersionString)
+                && equal(username, other.username) && equal(nettype, other.nettype) && equal(addrtype, other.addrtype)
+                && equal(address, other.address);
     }
 
+    public int hashCode() {
+        return 31 * (31 * hash(sessIdString) + hash(sessVersionString)) + hash(address);
+    }
 }
 
@@ -45,6 +45,17 @@ public class PhoneField extends SDPField implements javax.sdp.Phone {
         super(PHONE_FIELD);
     }
 
+    /**
+     * Costructs a new copy of a PhoneField.
+     *
+     * @param other the field to copy
+     */
+    public PhoneField(PhoneField other) {
+        super(other);
+        name = other.name;
+        phoneNumber = other.phoneNumber;
+    }
+
     public String getName() {
         return name;
     }
@@ -116,5 +127,20 @@ public class PhoneField extends SDPField implements javax.sdp.Phone {
         return encoded_string;
     }
 
+    public Object clone() {
+        return new PhoneField(this);
+    }
+
+    public boolean equals(Object that) {
+        if (!(that instanceof PhoneField)) {
+            return false;
+        }
+        PhoneField other = (PhoneField) that;
+        return equal(name, other.name) && equal(phoneNumber, other.phoneNumber);
+    }
+
+    public int hashCode() {
+        return 31 * hash(name) + hash(phoneNumber);
+    }
 }
 
@@ -44,6 +44,16 @@ public class ProtoVersionField extends SDPField implements javax.sdp.Version {
         super(PROTO_VERSION_FIELD);
     }
 
+    /**
+     * Costructs a new copy of a ProtoVersionField.
+     *
+     * @param other the field to copy
+     */
+    public ProtoVersionField(ProtoVersionField other) {
+        super(other);
+        protoVersion = other.protoVersion;
+    }
+
     public int getProtoVersion() {
         return protoVersion;
     }
@@ -90,5 +100,20 @@ public class ProtoVersionField extends SDPField implements javax.sdp.Version {
         return PROTO_VERSION_FIELD + protoVersion + Separators.NEWLINE;
     }
 
+    public Object clone() {
+        return new ProtoVersionField(this);
+    }
+
+    public boolean equals(Object that) {
+        if (!(that instanceof ProtoVersionField)) {
+            return false;
+        }
+        ProtoVersionField other = (ProtoVersionField) that;
+        return protoVersion == other.protoVersion;
+    }
+
+    public int hashCode() {
+        return protoVersion;
+    }
 }
 
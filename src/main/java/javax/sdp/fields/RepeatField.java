@@ -50,6 +50,24 @@ public class RepeatField extends SDPField implements javax.sdp.RepeatTime {
         offsets = new SDPObjectList();
     }
 
+    /**
+     * Costructs a deep copy of a RepeatField.
+     *
+     * @param other the field to copy
+     */
+    public RepeatField(RepeatField other) {
+        super(other);
+        if (other.repeatInterval != null) {
+            repeatInterval = new TypedTime(other.repeatInterval);
+        }
+        if (other.activeDuration != null) {
+            activeDuration = new TypedTime(other.activeDuration);
+        }
+        if (other.offsets != null) {
+            offsets = (SDPObjectList) other.offsets.clone();
+        }
+    }
+
     public void setRepeatInterval(TypedTime interval) {
         repeatInterval = interval;
     }
@@ -216,18 +234,20 @@ public class RepeatField extends SDPField implements javax.sdp.RepeatTime {
     }
 
     public Object clone() {
-        RepeatField retval = (RepeatField) super.clone();
-        if (this.repeatInterval != null) {
-            retval.repeatInterval = (TypedTime) this.repeatInterval.clone();
-        }
-        if (this.activeDuration != null) {
-            retval.activeDuration = (TypedTime) this.activeDuration.clone();
-        }
-        if (this.offsets != null) {
-            retval.offsets = (SDPObjectList) this.offsets.clone();
+        return new RepeatField(this);
+    }
+
+    public boolean equals(Object that) {
+        if (!(that instanceof RepeatField)) {
+            return false;
         }
-        return retval;
+        RepeatField other = (RepeatField) that;
+        return equal(repeatInterval, other.repeatInterval) && equal(activeDuration, other.activeDuration)
+                && equal(offsets, other.offsets);
     }
 
+    public int hashCode() {
+        return 31 * hash(repeatInterval) + hash(activeDuration);
+    }
 }
 
@@ -61,6 +61,11 @@ public abstract class SDPField extends SDPObject {
     public SDPField() {
     }
 
+    protected SDPField(SDPField other) {
+        super(other);
+        fieldName = other.fieldName;
+    }
+
     public String toString() {
         return this.encode();
     }
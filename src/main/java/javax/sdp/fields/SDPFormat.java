@@ -49,9 +49,34 @@ public class SDPFormat extends SDPObject {
     public SDPFormat() {
     }
 
+    /**
+     * Costructs a new copy of a SDPFormat.
+     *
+     * @param other the object to copy
+     */
+    public SDPFormat(SDPFormat other) {
+        super(other);
+        format = other.format;
+    }
+
     public String encode() {
         return format;
     }
 
+    public Object clone() {
+        return new SDPFormat(this);
+    }
+
+    public boolean equals(Object that) {
+        if (!(that instanceof SDPFormat)) {
+            return false;
+        }
+        SDPFormat other = (SDPFormat) that;
+        return equal(format, other.format);
+    }
+
+    public int hashCode() {
+        return hash(format);
+    }
 }
 
@@ -45,6 +45,19 @@ public abstract class SDPObject
 
     // should make this a property during the compile.
 
+    protected SDPObject() {
+    }
+
+    /**
+     * Copy constructor for the hand written clones of the subclasses.
+     *
+     * @param other the object to copy
+     */
+    protected SDPObject(SDPObject other) {
+        indentation = other.indentation;
+        matchExpression = other.matchExpression;
+    }
+
     public abstract String encode();
 
     protected void sprint(String s) {
@@ -64,12 +77,32 @@ public abstract class SDPObject
     }
 
     /**
-     * An introspection based equality predicate for SDPObjects.
+     * Equality predicate for SDPObjects. The fields of this package compare
+     * their members directly; this introspection based version is only the
+     * fallback for the others.
      *
      * @param that is the other object to test against.
      * @return true if the objects are equal.
      */
     public boolean equals(Object that) {
+        return that != null && reflectionEquals(that);
+    }
+
+    /**
+     * Consistent with the introspection based {@link #equals(Object)}.
+     * Subclasses comparing their members directly hash them as well.
+     */
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+
+    /**
+     * An introspection based equality predicate for SDPObjects.
+     *
+     * @param that is the other object to test against.
+     * @return true if the objects are equal.
+     */
+    public boolean reflectionEquals(Object that) {
         if (!this.getClass().equals(that.getClass())) {
             return false;
         }
@@ -140,6 +173,20 @@ public abstract class SDPObject
         return true;
     }
 
+    /**
+     * Null safe equality of two members.
+     */
+    protected static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Null safe hash code of a member.
+     */
+    protected static int hash(Object o) {
+        return o == null ? 0 : o.hashCode();
+    }
+
     /**
      * Generic introspection based printing funciton for this package.
      * Because we use introspection, this must reside in this package
@@ -378,3 +425,4 @@ public abstract class SDPObject
 
 }
 
+
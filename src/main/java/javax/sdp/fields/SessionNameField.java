@@ -38,6 +38,16 @@ public class SessionNameField extends SDPField implements SessionName {
         super(SDPFieldNames.SESSION_NAME_FIELD);
     }
 
+    /**
+     * Costructs a new copy of a SessionNameField.
+     *
+     * @param other the field to copy
+     */
+    public SessionNameField(SessionNameField other) {
+        super(other);
+        sessionName = other.sessionName;
+    }
+
     public String getSessionName() {
         return sessionName;
     }
@@ -84,4 +94,19 @@ public class SessionNameField extends SDPField implements SessionName {
         return SESSION_NAME_FIELD + sessionName + Separators.NEWLINE;
     }
 
+    public Object clone() {
+        return new SessionNameField(this);
+    }
+
+    public boolean equals(Object that) {
+        if (!(that instanceof SessionNameField)) {
+            return false;
+        }
+        SessionNameField other = (SessionNameField) that;
+        return equal(sessionName, other.sessionName);
+    }
+
+    public int hashCode() {
+        return hash(sessionName);
+    }
 }
@@ -50,6 +50,17 @@ public class TimeField extends SDPField implements Time {
         super(TIME_FIELD);
     }
 
+    /**
+     * Costructs a new copy of a TimeField.
+     *
+     * @param other the field to copy
+     */
+    public TimeField(TimeField other) {
+        super(other);
+        startTime = other.startTime;
+        stopTime = other.stopTime;
+    }
+
     public long getStartTime() {
         return startTime;
     }
@@ -198,5 +209,20 @@ public class TimeField extends SDPField implements Time {
                 .toString();
     }
 
+    public Object clone() {
+        return new TimeField(this);
+    }
+
+    public boolean equals(Object that) {
+        if (!(that instanceof TimeField)) {
+            return false;
+        }
+        TimeField other = (TimeField) that;
+        return startTime == other.startTime && stopTime == other.stopTime;
+    }
+
+    public int hashCode() {
+        return (int) (31 * (startTime ^ (startTime >>> 32)) + (stopTime ^ (stopTime >>> 32)));
+    }
 }
 
@@ -34,6 +34,20 @@ public class TypedTime extends SDPObject {
     String unit;
     int time;
 
+    public TypedTime() {
+    }
+
+    /**
+     * Costructs a new copy of a TypedTime.
+     *
+     * @param other the object to copy
+     */
+    public TypedTime(TypedTime other) {
+        super(other);
+        unit = other.unit;
+        time = other.time;
+    }
+
     public String encode() {
         String retval = "";
         retval += Integer.toString(time);
@@ -59,4 +73,19 @@ public class TypedTime extends SDPObject {
         unit = u;
     }
 
+    public Object clone() {
+        return new TypedTime(this);
+    }
+
+    public boolean equals(Object that) {
+        if (!(that instanceof TypedTime)) {
+            return false;
+        }
+        TypedTime other = (TypedTime) that;
+        return time == other.time && equal(unit, other.unit);
+    }
+
+    public int hashCode() {
+        return 31 * hash(unit) + time;
+    }
 }
@@ -47,6 +47,17 @@ public class URIField extends SDPField implements javax.sdp.URI {
         super(URI_FIELD);
     }
 
+    /**
+     * Costructs a new copy of a URIField.
+     *
+     * @param other the field to copy
+     */
+    public URIField(URIField other) {
+        super(other);
+        url = other.url;
+        urlString = other.urlString;
+    }
+
     public String getURI() {
         return urlString;
     }
@@ -89,4 +100,26 @@ public class URIField extends SDPField implements javax.sdp.URI {
         }
     }
 
+    public Object clone() {
+        return new URIField(this);
+    }
+
+    public boolean equals(Object that) {
+        if (!(that instanceof URIField)) {
+            return false;
+        }
+        URIField other = (URIField) that;
+        return equal(uri(), other.uri());
+    }
+
+    public int hashCode() {
+        return hash(uri());
+    }
+
+    /**
+     * Compared as text: URL.equals resolves host names.
+     */
+    private String uri() {
+        return urlString != null ? urlString : url != null ? url.toString() : null;
+    }
 }
@@ -38,6 +38,23 @@ public class ZoneAdjustment extends SDPObject {
     protected String sign;
     protected TypedTime offset;
 
+    public ZoneAdjustment() {
+    }
+
+    /**
+     * Costructs a deep copy of a ZoneAdjustment.
+     *
+     * @param other the object to copy
+     */
+    public ZoneAdjustment(ZoneAdjustment other) {
+        super(other);
+        time = other.time;
+        sign = other.sign;
+        if (other.offset != null) {
+            offset = new TypedTime(other.offset);
+        }
+    }
+
     /**
      * Set the time.
      *
@@ -99,11 +116,18 @@ public class ZoneAdjustment extends SDPObject {
     }
 
     public Object clone() {
-        ZoneAdjustment retval = (ZoneAdjustment) super.clone();
-        if (this.offset != null) {
-            retval.offset = (TypedTime) this.offset.clone();
+        return new ZoneAdjustment(this);
+    }
+
+    public boolean equals(Object that) {
+        if (!(that instanceof ZoneAdjustment)) {
+            return false;
         }
-        return retval;
+        ZoneAdjustment other = (ZoneAdjustment) that;
+        return time == other.time && equal(sign, other.sign) && equal(offset, other.offset);
     }
 
+    public int hashCode() {
+        return 31 * (31 * (int) (time ^ (time >>> 32)) + hash(sign)) + hash(offset);
+    }
 }
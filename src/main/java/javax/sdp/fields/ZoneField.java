@@ -56,6 +56,18 @@ public class ZoneField
         zoneAdjustments = new SDPObjectList();
     }
 
+    /**
+     * Costructs a deep copy of a ZoneField.
+     *
+     * @param other the field to copy
+     */
+    public ZoneField(ZoneField other) {
+        super(other);
+        if (other.zoneAdjustments != null) {
+            zoneAdjustments = (SDPObjectList) other.zoneAdjustments.clone();
+        }
+    }
+
     /**
      * Add an element to the zone adjustment list.
      *
@@ -192,10 +204,18 @@ public class ZoneField
     }
 
     public Object clone() {
-        ZoneField retval = (ZoneField) super.clone();
-        if (this.zoneAdjustments != null) {
-            retval.zoneAdjustments = (SDPObjectList) this.zoneAdjustments.clone();
+        return new ZoneField(this);
+    }
+
+    public boolean equals(Object that) {
+        if (!(that instanceof ZoneField)) {
+            return false;
         }
-        return retval;
+        ZoneField other = (ZoneField) that;
+        return equal(zoneAdjustments, other.zoneAdjustments);
+    }
+
+    public int hashCode() {
+        return zoneAdjustments == null ? 0 : zoneAdjustments.size();
     }
 }
@@ -22,80 +22,102 @@
  */
 package javax.sdp.parser;
 
-import gov.nist.core.PackageNames;
-
-import java.lang.reflect.Constructor;
 import java.text.ParseException;
-import java.util.Hashtable;
 
 /**
  * Factory for creating parsers for the SDP stuff.
+ * The field type is dispatched through a switch, so creating a parser costs
+ * no more than constructing it.
  *
  * @author M. Ranganathan   <br/>
  * @version 1.2
  */
 public class ParserFactory {
-    private static Hashtable parserTable;
-    private static Class[] constructorArgs;
-    private static final String packageName =
-            PackageNames.SDP_PACKAGE + ".parser";
 
-    private static Class getParser(String parserClass) {
-        try {
-            return Class.forName(packageName + "." + parserClass);
-        } catch (ClassNotFoundException ex) {
-            System.out.println("Could not find class");
-            ex.printStackTrace();
-            System.exit(0);
-            return null; // dummy
+    /**
+     * @param field an SDP line
+     * @return whether there is a parser for the type of the given line, whatever its case
+     */
+    public static boolean isSupported(String field) {
+        if (field == null || field.length() < 2 || field.charAt(1) != '=') {
+            return false;
+        }
+        switch (Character.toLowerCase(field.charAt(0))) {
+            case 'a':
+            case 'b':
+            case 'c':
+            case 'e':
+            case 'i':
+            case 'k':
+            case 'm':
+            case 'o':
+            case 'p':
+            case 'v':
+            case 'r':
+            case 's':
+            case 't':
+            case 'u':
+            case 'z':
+                return true;
+            default:
+                return false;
         }
     }
 
-    static {
-        constructorArgs = new Class[1];
-        constructorArgs[0] = String.class;
-        parserTable = new Hashtable();
-        parserTable.put("a", getParser("AttributeFieldParser"));
-        parserTable.put("b", getParser("BandwidthFieldParser"));
-        parserTable.put("c", getParser("ConnectionFieldParser"));
-        parserTable.put("e", getParser("EmailFieldParser"));
-        parserTable.put("i", getParser("InformationFieldParser"));
-        parserTable.put("k", getParser("KeyFieldParser"));
-        parserTable.put("m", getParser("MediaFieldParser"));
-        parserTable.put("o", getParser("OriginFieldParser"));
-        parserTable.put("p", getParser("PhoneFieldParser"));
-        parserTable.put("v", getParser("ProtoVersionFieldParser"));
-        parserTable.put("r", getParser("RepeatFieldParser"));
-        parserTable.put("s", getParser("SessionNameFieldParser"));
-        parserTable.put("t", getParser("TimeFieldParser"));
-        parserTable.put("u", getParser("URIFieldParser"));
-        parserTable.put("z", getParser("ZoneFieldParser"));
-    }
-
+    /**
+     * Creates the parser of an SDP line. The type letter is matched ignoring case.
+     *
+     * @param field an SDP line
+     * @return the parser for the type of the line
+     * @throws ParseException if the line has no known type
+     */
     public static SDPParser createParser(String field) throws ParseException {
-        String fieldName = Lexer.getFieldName(field);
-        if (fieldName == null) {
-            return null;
+        int i = field.indexOf('=');
+        if (i == -1) {
+            throw new ParseException("Missing '=' in field " + field, 0);
         }
-        Class parserClass = (Class) parserTable.get(fieldName.toLowerCase());
-
-        if (parserClass != null) {
-            try {
-
-                Constructor cons = parserClass.getConstructor(constructorArgs);
-                Object[] args = new Object[1];
-                args[0] = field;
-                SDPParser retval = (SDPParser) cons.newInstance(args);
-                return retval;
-
-            } catch (Exception ex) {
-                return null; // to placate the compiler.
+        if (i == 1) {
+            char type = Character.toLowerCase(field.charAt(0));
+            if (type != field.charAt(0)) {
+                // the field parsers expect a lower case type letter
+                field = type + field.substring(1);
+            }
+            switch (type) {
+                case 'a':
+                    return new AttributeFieldParser(field);
+                case 'b':
+                    return new BandwidthFieldParser(field);
+                case 'c':
+                    return new ConnectionFieldParser(field);
+                case 'e':
+                    return new EmailFieldParser(field);
+                case 'i':
+                    return new InformationFieldParser(field);
+                case 'k':
+                    return new KeyFieldParser(field);
+                case 'm':
+                    return new MediaFieldParser(field);
+                case 'o':
+                    return new OriginFieldParser(field);
+                case 'p':
+                    return new PhoneFieldParser(field);
+                case 'v':
+                    return new ProtoVersionFieldParser(field);
+                case 'r':
+                    return new RepeatFieldParser(field);
+                case 's':
+                    return new SessionNameFieldParser(field);
+                case 't':
+                    return new TimeFieldParser(field);
+                case 'u':
+                    return new URIFieldParser(field);
+                case 'z':
+                    return new ZoneFieldParser(field);
             }
-        } else {
-            throw new ParseException(
-                    "Could not find parser for " + fieldName,
-                    0);
         }
+        throw new ParseException(
+                "Could not find parser for " + field.substring(0, i),
+                0);
     }
 
 }
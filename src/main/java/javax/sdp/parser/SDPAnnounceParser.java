@@ -39,6 +39,7 @@ public class SDPAnnounceParser extends ParserCore {
 
     protected Lexer lexer;
     protected List sdpMessage;
+    protected int errorLine;
 
     /**
      * Creates new SDPAnnounceParser
@@ -107,16 +108,30 @@ public class SDPAnnounceParser extends ParserCore {
         }
     }
 
+    /**
+     * @return the line, starting at 1, of the field that failed to parse, 0 if none did
+     */
+    public int getErrorLine() {
+        return errorLine;
+    }
+
     public SessionDescriptionImpl parse() throws ParseException {
         SessionDescriptionImpl retval = new SessionDescriptionImpl();
-        for (Object aSdpMessage : sdpMessage) {
-            String field = (String) aSdpMessage;
+        errorLine = 0;
+        for (int i = 0; i < sdpMessage.size(); i++) {
+            String field = (String) sdpMessage.get(i);
+            if (!ParserFactory.isSupported(field)) {
+                // Not Recognized Field. Ignored for now.
+                continue;
+            }
             try {
                 SDPParser sdpParser = ParserFactory.createParser(field);
                 SDPField sdpField = sdpParser.parse();
                 retval.addField(sdpField);
-            } catch (Exception e) {
-                // Not Recognized Field. Ignored for now.
+            } catch (ParseException e) {
+                errorLine = i + 1;
+                throw new ParseException("Invalid field at line " + errorLine + " \"" + field + "\": "
+                        + e.getMessage(), e.getErrorOffset());
             }
         }
 
@@ -0,0 +1,377 @@
+/*
+ * Conditions Of Use
+ *
+ *  This software was developed by employees of the National Institute of
+ *  Standards and Technology (NIST), an agency of the Federal Government.
+ *  Pursuant to title 15 Untied States Code Section 105, works of NIST
+ *  employees are not subject to copyright protection in the United States
+ *  and are considered to be in the public domain.  As a result, a formal
+ *  license is not needed to use the software.
+ *
+ *  This software is provided by NIST as a service and is expressly
+ *  provided "AS IS."  NIST MAKES NO WARRANTY OF ANY KIND, EXPRESS, IMPLIED
+ *  OR STATUTORY, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTY OF
+ *  MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, NON-INFRINGEMENT
+ *  AND DATA ACCURACY.  NIST does not warrant or make any representations
+ *  regarding the use of the software or the results thereof, including but
+ *  not limited to the correctness, accuracy, reliability or usefulness of
+ *  the software.
+ *
+ *  Permission to use this software is contingent upon your acceptance
+ *  of the terms of this agreement
+ */
+package javax.sdp.parser;
+
+import gov.nist.core.Host;
+import gov.nist.core.NameValue;
+
+import javax.sdp.SdpException;
+import javax.sdp.SessionDescriptionImpl;
+import javax.sdp.fields.AttributeField;
+import javax.sdp.fields.BandwidthField;
+import javax.sdp.fields.ConnectionAddress;
+import javax.sdp.fields.ConnectionField;
+import javax.sdp.fields.InformationField;
+import javax.sdp.fields.MediaField;
+import javax.sdp.fields.OriginField;
+import javax.sdp.fields.ProtoVersionField;
+import javax.sdp.fields.SDPField;
+import javax.sdp.fields.SessionNameField;
+import javax.sdp.fields.TimeField;
+import javax.sdp.fields.URIField;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single pass parser for SDP Announce messages.
+ * The message is walked once, line by line, and every field is built straight
+ * from the message characters: no line list, no Lexer and no Token is created.
+ * The rarely used e=, p=, k=, r= and z= fields are handed over to their field
+ * parsers. Type letters are matched ignoring case and unknown field types are
+ * ignored, as in {@link SDPAnnounceParser}.
+ */
+public class SDPSessionParser {
+
+    private final String message;
+    private int ptr;
+    private int end;
+    private int errorLine;
+
+    /**
+     * Create a new SDPSessionParser.
+     *
+     * @param message string containing the sdp announce message.
+     */
+    public SDPSessionParser(String message) {
+        this.message = message;
+    }
+
+    /**
+     * @return the line, starting at 1, of the field that failed to parse, 0 if none did
+     */
+    public int getErrorLine() {
+        return errorLine;
+    }
+
+    public SessionDescriptionImpl parse() throws ParseException {
+        SessionDescriptionImpl retval = new SessionDescriptionImpl();
+        errorLine = 0;
+        if (message == null) {
+            throw new ParseException("Failed to Parse Necessary Fields.", 0);
+        }
+        final int length = message.length();
+        int start = 0;
+        // Strip off leading junk.
+        while (start < length && message.charAt(start) <= ' ') {
+            start++;
+        }
+        int line = 0;
+        while (start < length) {
+            int eol = endOfLine(message, start);
+            line++;
+            try {
+                SDPField sdpField = parseField(start, eol);
+                if (sdpField != null) {
+                    retval.addField(sdpField);
+                }
+            } catch (ParseException e) {
+                errorLine = line;
+                throw new ParseException("Invalid field at line " + line + " \""
+                        + message.substring(start, eol) + "\": " + e.getMessage(), e.getErrorOffset());
+            }
+            start = nextLine(message, eol);
+        }
+
+        try {
+            if (retval.getConnection() != null && retval.getMediaDescriptions(false) != null) {
+                return retval;
+            }
+        } catch (SdpException e) {
+            // Do Nothing.
+        }
+        throw new ParseException("Failed to Parse Necessary Fields.", 0);
+    }
+
+    /**
+     * @param message the sdp announce message
+     * @param start   offset of a line
+     * @return offset of the CR or LF ending the line, the message length for the last line
+     */
+    public static int endOfLine(String message, int start) {
+        final int length = message.length();
+        int eol = start;
+        while (eol < length && message.charAt(eol) != '\r' && message.charAt(eol) != '\n') {
+            eol++;
+        }
+        return eol;
+    }
+
+    /**
+     * @param message the sdp announce message
+     * @param eol     offset returned by {@link #endOfLine(String, int)}
+     * @return offset of the following line, the message length after the last line
+     */
+    public static int nextLine(String message, int eol) {
+        if (eol >= message.length()) {
+            return message.length();
+        }
+        // "\r\n" and "\n\r" end a single line
+        if (eol + 1 < message.length() && message.charAt(eol) != message.charAt(eol + 1)
+                && (message.charAt(eol + 1) == '\r' || message.charAt(eol + 1) == '\n')) {
+            eol++;
+        }
+        return eol + 1;
+    }
+
+    /**
+     * Parses a single line of the message.
+     *
+     * @param start offset of the line
+     * @param eol   offset of the end of the line
+     * @return the field, null if the field type is not known
+     * @throws ParseException if the field is malformed
+     */
+    public SDPField parseField(int start, int eol) throws ParseException {
+        if (eol - start < 2 || message.charAt(start + 1) != '=') {
+            return null;
+        }
+        ptr = start + 2;
+        end = eol;
+        try {
+            return field(Character.toLowerCase(message.charAt(start)), start, eol);
+        } catch (RuntimeException e) {
+            throw new ParseException(e.toString(), ptr - start);
+        }
+    }
+
+    private SDPField field(char type, int start, int eol) throws ParseException {
+        switch (type) {
+            case 'v':
+                return protoVersionField();
+            case 'o':
+                return originField();
+            case 's':
+                SessionNameField sessionNameField = new SessionNameField();
+                sessionNameField.setSessionName(rest());
+                return sessionNameField;
+            case 'i':
+                InformationField informationField = new InformationField();
+                informationField.setInformation(rest());
+                return informationField;
+            case 'u':
+                URIField uriField = new URIField();
+                uriField.setURI(rest());
+                return uriField;
+            case 'c':
+                return connectionField();
+            case 'b':
+                return bandwidthField();
+            case 't':
+                return timeField();
+            case 'm':
+                return mediaField();
+            case 'a':
+                return attributeField();
+            case 'e':
+            case 'p':
+            case 'k':
+            case 'r':
+            case 'z':
+                return ParserFactory.createParser(message.substring(start, eol)).parse();
+            default:
+                return null;
+        }
+    }
+
+    private ProtoVersionField protoVersionField() throws ParseException {
+        ProtoVersionField protoVersionField = new ProtoVersionField();
+        protoVersionField.setProtoVersion(Integer.parseInt(token()));
+        return protoVersionField;
+    }
+
+    private OriginField originField() throws ParseException {
+        OriginField originField = new OriginField();
+        try {
+            originField.setUsername(token());
+        } catch (SdpException e) {
+            throw new ParseException(e.getMessage(), ptr);
+        }
+        // guard against very long session IDs
+        String sessId = token();
+        if (sessId.length() > 18) {
+            sessId = sessId.substring(sessId.length() - 18);
+        }
+        try {
+            originField.setSessId(Long.parseLong(sessId));
+        } catch (NumberFormatException ex) {
+            originField.setSessionId(sessId);
+        }
+        String sessVer = token();
+        if (sessVer.length() > 18) {
+            sessVer = sessVer.substring(sessVer.length() - 18);
+        }
+        try {
+            originField.setSessVersion(Long.parseLong(sessVer));
+        } catch (NumberFormatException ex) {
+            originField.setSessVersion(sessVer);
+        }
+        originField.setNettype(token());
+        originField.setAddrtype(token());
+        originField.setAddress(new Host(token()));
+        return originField;
+    }
+
+    private ConnectionField connectionField() throws ParseException {
+        ConnectionField connectionField = new ConnectionField();
+        connectionField.setNettype(token());
+        connectionField.setAddrType(token());
+
+        ConnectionAddress connectionAddress = new ConnectionAddress();
+        String address = rest();
+        int begin = address.indexOf('/');
+        if (begin != -1) {
+            connectionAddress.setAddress(new Host(address.substring(0, begin)));
+            int middle = address.indexOf('/', begin + 1);
+            if (middle != -1) {
+                connectionAddress.setTtl(Integer.parseInt(address.substring(begin + 1, middle).trim()));
+                connectionAddress.setPort(Integer.parseInt(address.substring(middle + 1).trim()));
+            } else {
+                connectionAddress.setTtl(Integer.parseInt(address.substring(begin + 1).trim()));
+            }
+        } else if (address.length() > 0) {
+            connectionAddress.setAddress(new Host(address));
+        } else {
+            throw new ParseException("Missing connection address", ptr);
+        }
+        connectionField.setAddress(connectionAddress);
+        return connectionField;
+    }
+
+    private BandwidthField bandwidthField() throws ParseException {
+        String rest = rest();
+        int colon = rest.indexOf(':');
+        if (colon == -1) {
+            throw new ParseException("Missing ':' in bandwidth", ptr);
+        }
+        BandwidthField bandwidthField = new BandwidthField();
+        bandwidthField.setBandwidth(Integer.parseInt(rest.substring(colon + 1).trim()));
+        bandwidthField.setBwtype(rest.substring(0, colon).trim());
+        return bandwidthField;
+    }
+
+    private TimeField timeField() throws ParseException {
+        TimeField timeField = new TimeField();
+        timeField.setStartTime(time(token()));
+        timeField.setStopTime(time(token()));
+        return timeField;
+    }
+
+    private long time(String time) {
+        if (time.length() > 18) {
+            time = time.substring(time.length() - 18);
+        }
+        return Long.parseLong(time);
+    }
+
+    private MediaField mediaField() throws ParseException {
+        MediaField mediaField = new MediaField();
+        mediaField.setMedia(token());
+        String port = token();
+        int slash = port.indexOf('/');
+        if (slash != -1) {
+            mediaField.setPort(Integer.parseInt(port.substring(0, slash)));
+            mediaField.setNports(Integer.parseInt(port.substring(slash + 1)));
+        } else {
+            mediaField.setPort(Integer.parseInt(port));
+        }
+        if (skipSPorHT()) {
+            mediaField.setProto(token());
+        }
+        List<String> formatList = new ArrayList<String>();
+        while (skipSPorHT()) {
+            formatList.add(token());
+        }
+        mediaField.setFormats(formatList);
+        return mediaField;
+    }
+
+    private AttributeField attributeField() throws ParseException {
+        String rest = rest();
+        if (rest.length() == 0) {
+            throw new ParseException("Missing attribute", ptr);
+        }
+        AttributeField attributeField = new AttributeField();
+        int colon = rest.indexOf(':');
+        if (colon != -1) {
+            attributeField.setAttribute(new NameValue(rest.substring(0, colon).trim(),
+                    rest.substring(colon + 1).trim()));
+        } else {
+            attributeField.setAttribute(new NameValue(rest, null));
+        }
+        return attributeField;
+    }
+
+    //**************************** Tokenizer ****************************/
+
+    /**
+     * Skips spaces and tabs.
+     *
+     * @return whether there is anything left on the line
+     */
+    private boolean skipSPorHT() {
+        while (ptr < end && (message.charAt(ptr) == ' ' || message.charAt(ptr) == '\t')) {
+            ptr++;
+        }
+        return ptr < end;
+    }
+
+    /**
+     * @return the next whitespace delimited token of the line
+     * @throws ParseException if there are no more tokens
+     */
+    private String token() throws ParseException {
+        if (!skipSPorHT()) {
+            throw new ParseException("Unexpected end of field", ptr);
+        }
+        final int begin = ptr;
+        while (ptr < end && message.charAt(ptr) != ' ' && message.charAt(ptr) != '\t') {
+            ptr++;
+        }
+        return message.substring(begin, ptr);
+    }
+
+    /**
+     * @return the trimmed remainder of the line
+     */
+    private String rest() {
+        skipSPorHT();
+        int last = end;
+        while (last > ptr && message.charAt(last - 1) <= ' ') {
+            last--;
+        }
+        final String rest = message.substring(ptr, last);
+        ptr = end;
+        return rest;
+    }
+}
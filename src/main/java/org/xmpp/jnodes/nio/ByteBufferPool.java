@@ -0,0 +1,193 @@
+package org.xmpp.jnodes.nio;
+
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Pool of fixed size direct buffers carved out of larger direct slabs.
+ * Buffers are handed out by {@link #acquire()} and must be given back with {@link #release(ByteBuffer)}
+ * once the consumer is done with them. When the pool is empty a new slab is carved, up to
+ * maxBuffers; past that, standalone buffers are allocated and left to the garbage collector.
+ * <p/>
+ * Every carved buffer has a slot, found by identity and holding only a weak reference to it, and a
+ * lent flag. A buffer released twice or not carved by this pool is ignored, and a buffer that is
+ * never released stays collectable: its slot is simply lost to the pool.
+ */
+public class ByteBufferPool {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1450;
+    public static final int DEFAULT_SLAB_SIZE = 64;
+    public static final int DEFAULT_MAX_BUFFERS = 4096;
+
+    private final int bufferSize;
+    private final int slabSize;
+    private final int maxBuffers;
+    private final BlockingQueue<ByteBuffer> free;
+    // Open addressed by identity hash (ByteBuffer equality is by content), written only by grow()
+    private final AtomicReferenceArray<WeakReference<ByteBuffer>> slots;
+    private final AtomicIntegerArray lent;
+    private final AtomicInteger allocated = new AtomicInteger(0);
+    private final AtomicInteger inUse = new AtomicInteger(0);
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+
+    public ByteBufferPool() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    public ByteBufferPool(final int bufferSize) {
+        this(bufferSize, DEFAULT_SLAB_SIZE, DEFAULT_MAX_BUFFERS);
+    }
+
+    public ByteBufferPool(final int bufferSize, final int slabSize, final int maxBuffers) {
+        if (bufferSize <= 0 || slabSize <= 0 || maxBuffers < slabSize) {
+            throw new IllegalArgumentException("Invalid pool dimensions: bufferSize=" + bufferSize +
+                    " slabSize=" + slabSize + " maxBuffers=" + maxBuffers);
+        }
+        this.bufferSize = bufferSize;
+        this.slabSize = slabSize;
+        this.maxBuffers = maxBuffers;
+        this.free = new ArrayBlockingQueue<ByteBuffer>(maxBuffers);
+        // at most half full, so that probes stay short and always end on an empty slot
+        int tableSize = Integer.highestOneBit(maxBuffers) << 2;
+        this.slots = new AtomicReferenceArray<WeakReference<ByteBuffer>>(tableSize);
+        this.lent = new AtomicIntegerArray(tableSize);
+    }
+
+    /**
+     * Takes a cleared buffer from the pool.
+     *
+     * @return a buffer with bufferSize remaining bytes
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer b = free.poll();
+        if (b != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            b = grow();
+        }
+        final int slot = slotOf(b);
+        if (slot != -1) {
+            lent.set(slot, 1);
+            inUse.incrementAndGet();
+        }
+        b.clear();
+        return b;
+    }
+
+    /**
+     * Gives a buffer back to the pool. The caller must not touch the buffer afterwards.
+     * Buffers not currently lent by this pool, including ones already released and standalone
+     * ones, are ignored.
+     *
+     * @param b the buffer to release
+     * @return whether the buffer was taken back
+     */
+    public boolean release(final ByteBuffer b) {
+        if (b == null) {
+            return false;
+        }
+        final int slot = slotOf(b);
+        if (slot == -1 || !lent.compareAndSet(slot, 1, 0)) {
+            return false;
+        }
+        inUse.decrementAndGet();
+        b.clear();
+        free.offer(b);
+        return true;
+    }
+
+    private synchronized ByteBuffer grow() {
+        // Another thread may have carved a slab meanwhile
+        final ByteBuffer b = free.poll();
+        if (b != null) {
+            return b;
+        }
+        if (allocated.get() + slabSize > maxBuffers) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        final ByteBuffer slab = ByteBuffer.allocateDirect(bufferSize * slabSize);
+        for (int i = 1; i < slabSize; i++) {
+            slab.limit((i + 1) * bufferSize).position(i * bufferSize);
+            free.offer(register(slab.slice()));
+        }
+        slab.limit(bufferSize).position(0);
+        allocated.addAndGet(slabSize);
+        return register(slab.slice());
+    }
+
+    /**
+     * Gives a newly carved buffer a slot. Called by grow() only.
+     */
+    private ByteBuffer register(final ByteBuffer b) {
+        final int mask = slots.length() - 1;
+        int i = System.identityHashCode(b) & mask;
+        while (slots.get(i) != null) {
+            i = (i + 1) & mask;
+        }
+        slots.set(i, new WeakReference<ByteBuffer>(b));
+        return b;
+    }
+
+    /**
+     * @return the slot of a buffer carved by this pool, -1 for any other buffer
+     */
+    private int slotOf(final ByteBuffer b) {
+        final int mask = slots.length() - 1;
+        int i = System.identityHashCode(b) & mask;
+        WeakReference<ByteBuffer> ref;
+        while ((ref = slots.get(i)) != null) {
+            if (ref.get() == b) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @return number of acquires served from the free list
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of acquires that had to carve a slab or allocate
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return pooled buffers acquired and not yet released
+     */
+    public int getInUse() {
+        return inUse.get();
+    }
+
+    /**
+     * @return buffers currently sitting in the free list
+     */
+    public int getAvailable() {
+        return free.size();
+    }
+
+    /**
+     * @return pooled buffers carved out of slabs so far
+     */
+    public int getAllocated() {
+        return allocated.get();
+    }
+}
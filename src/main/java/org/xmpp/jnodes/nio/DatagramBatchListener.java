@@ -0,0 +1,24 @@
+package org.xmpp.jnodes.nio;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * A DatagramListener that can take all the datagrams drained in one selector wakeup at once.
+ * See {@link SelDatagramChannel#setBatchSize(int)}.
+ */
+public interface DatagramBatchListener extends DatagramListener {
+
+    /**
+     * Called with the datagrams read in one wakeup. Each buffer must be released as with
+     * {@link DatagramListener#datagramReceived}. The arrays are reused by the channel, so they
+     * must not be kept once this method returns.
+     *
+     * @param channel   the channel the datagrams were received on
+     * @param buffers   the received buffers, valid up to count
+     * @param addresses the sender of each buffer, valid up to count
+     * @param count     number of datagrams received
+     */
+    public void datagramsReceived(ListenerDatagramChannel channel, ByteBuffer[] buffers, SocketAddress[] addresses, int count);
+
+}
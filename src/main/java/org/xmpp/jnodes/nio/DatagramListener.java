@@ -5,6 +5,10 @@ import java.nio.ByteBuffer;
 
 public interface DatagramListener {
 
+    /**
+     * Called for every datagram received. The buffer belongs to the channel's pool; call
+     * {@link ListenerDatagramChannel#release(ByteBuffer)} once it is no longer needed.
+     */
     public void datagramReceived(ListenerDatagramChannel channel, ByteBuffer buffer, SocketAddress address);
 
 }
@@ -0,0 +1,121 @@
+package org.xmpp.jnodes.nio;
+
+import org.zoolu.tools.NamingThreadFactory;
+
+import java.lang.reflect.Method;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Executors that can be used to dispatch DatagramListener callbacks.
+ */
+public final class DispatchExecutors {
+
+    /**
+     * Runs the listener directly on the selector thread. Only suitable for handlers that never block.
+     */
+    public static final Executor INLINE = new Executor() {
+        public void execute(final Runnable command) {
+            command.run();
+        }
+    };
+
+    private static ExecutorService shared;
+
+    private DispatchExecutors() {
+    }
+
+    /**
+     * The pool used when no executor is configured: 10 threads shared by every channel.
+     *
+     * @return the shared dispatch pool
+     */
+    public static synchronized ExecutorService shared() {
+        if (shared == null) {
+            shared = Executors.newFixedThreadPool(10, new NamingThreadFactory("DatagramDispatch"));
+        }
+        return shared;
+    }
+
+    /**
+     * Creates an executor that runs its tasks one at a time, in submission order, on the given delegate.
+     * Meant to be created per channel so that packets of one SIP dialog are handled in order.
+     *
+     * @param delegate the executor that actually runs the tasks
+     * @return a new ordered executor
+     */
+    public static Executor ordered(final Executor delegate) {
+        return new OrderedExecutor(delegate);
+    }
+
+    /**
+     * Creates a virtual-thread-per-task executor when the running JDK supports them, falling back to
+     * a cached thread pool otherwise.
+     *
+     * @return a thread-per-task executor
+     */
+    public static ExecutorService threadPerTask() {
+        try {
+            final Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (Exception e) {
+            return Executors.newCachedThreadPool(new NamingThreadFactory("DatagramDispatch"));
+        }
+    }
+
+    /**
+     * @return whether {@link #threadPerTask()} will use virtual threads
+     */
+    public static boolean isVirtualThreadSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static class OrderedExecutor implements Executor, Runnable {
+
+        private final Executor delegate;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        OrderedExecutor(final Executor delegate) {
+            this.delegate = delegate;
+        }
+
+        public void execute(final Runnable command) {
+            tasks.offer(command);
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                delegate.execute(this);
+            }
+        }
+
+        public void run() {
+            try {
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    try {
+                        task.run();
+                    } catch (Throwable t) {
+                        t.printStackTrace();
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+            }
+            if (!tasks.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.xmpp.jnodes.nio;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear histogram of nanosecond latencies. Each power of two is split in
+ * 16 linear sub-buckets, so reported percentiles are within about 6% of the real value.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = SUB_COUNT + (63 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong(0);
+    private final AtomicLong max = new AtomicLong(0);
+
+    static int indexOf(final long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        final int exp = 63 - Long.numberOfLeadingZeros(value);
+        final int sub = (int) (value >>> (exp - SUB_BITS)) - SUB_COUNT;
+        return SUB_COUNT + (exp - SUB_BITS) * SUB_COUNT + sub;
+    }
+
+    static long lowestValueAt(final int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        final int exp = (index - SUB_COUNT) / SUB_COUNT + SUB_BITS;
+        final long sub = (index - SUB_COUNT) % SUB_COUNT + SUB_COUNT;
+        return sub << (exp - SUB_BITS);
+    }
+
+    public void record(final long nanos) {
+        final long v = nanos < 0 ? 0 : nanos;
+        counts.incrementAndGet(indexOf(v));
+        count.incrementAndGet();
+        long m = max.get();
+        while (v > m && !max.compareAndSet(m, v)) {
+            m = max.get();
+        }
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return upper bound, in nanoseconds, of the bucket holding the given percentile, 0 if empty
+     */
+    public long getPercentile(final double percentile) {
+        final long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        final long target = Math.max(1, (long) Math.ceil(total * percentile / 100d));
+        long acc = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            acc += counts.get(i);
+            if (acc >= target) {
+                return Math.min(i + 1 < BUCKETS ? lowestValueAt(i + 1) - 1 : Long.MAX_VALUE, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        max.set(0);
+    }
+
+    public String toString() {
+        return "count=" + getCount() + " p50=" + getPercentile(50) + "ns p99=" + getPercentile(99) +
+                "ns p999=" + getPercentile(99.9) + "ns max=" + getMax() + "ns";
+    }
+}
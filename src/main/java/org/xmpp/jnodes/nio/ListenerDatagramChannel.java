@@ -7,6 +7,25 @@ import java.nio.ByteBuffer;
 public interface ListenerDatagramChannel {
     int send(ByteBuffer src, SocketAddress target) throws IOException;
 
+    /**
+     * Sends several datagrams in one call, stopping early if the socket send buffer is full.
+     *
+     * @param srcs    the datagrams
+     * @param targets the destination of each datagram
+     * @param count   number of entries to send from the start of both arrays
+     * @return number of datagrams actually sent
+     * @throws IOException if an I/O error occurs
+     */
+    int sendBatch(ByteBuffer[] srcs, SocketAddress[] targets, int count) throws IOException;
+
+    /**
+     * Hands a buffer received through {@link DatagramListener#datagramReceived} back to the channel's pool.
+     * Listeners that never release simply make the pool miss and allocate.
+     *
+     * @param buffer the received buffer, not to be used afterwards
+     */
+    void release(ByteBuffer buffer);
+
     void setDatagramListener(final DatagramListener listener);
 
     void close() throws IOException;
@@ -126,6 +126,7 @@ public class PublicIPResolver {
                         final byte b[] = new byte[buffer.position()];
                         buffer.rewind();
                         buffer.get(b, 0, b.length);
+                        channel.release(buffer);
                         h[0] = parseResponse(b);
                     }
                 }, new InetSocketAddress(System.getProperty("os.name").toLowerCase().indexOf("win") > -1 ? LocalIPResolver.getLocalIP() : "0.0.0.0", lport));
@@ -4,137 +4,288 @@ import java.io.IOException;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
-import java.util.Iterator;
-import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class SelDatagramChannel implements ListenerDatagramChannel {
 
-    private final static ExecutorService executorService = Executors.newFixedThreadPool(10);
-    private static Selector selector;
+    private static SelectorLoopGroup defaultLoopGroup;
 
     // Instance Properties
     protected final DatagramChannel channel;
-    private DatagramListener datagramListener;
-    private final static Object obj = new Object();
+    private final SelectorLoop loop;
+    private final ByteBufferPool bufferPool;
+    private volatile DatagramListener datagramListener;
+    private volatile Executor dispatchExecutor;
+    private volatile int batchSize = 1;
+    // Only touched by the owning selector loop when dispatching inline
+    private ByteBuffer[] batchBuffers = new ByteBuffer[0];
+    private SocketAddress[] batchAddresses = new SocketAddress[0];
+    // Dispatch tasks handed back by the executor, popped by the selector loop only
+    private final AtomicReference<Dispatch> freeDispatches = new AtomicReference<Dispatch>();
 
-    private static void init() {
+    protected SelDatagramChannel(final DatagramChannel channel, final SelectorLoop loop, final ByteBufferPool bufferPool, final Executor dispatchExecutor, final DatagramListener datagramListener) {
+        this.channel = channel;
+        this.loop = loop;
+        this.bufferPool = bufferPool;
+        this.dispatchExecutor = dispatchExecutor;
+        this.datagramListener = datagramListener;
+    }
+
+    /**
+     * Returns the loop group used by channels opened without an explicit group,
+     * creating one selector per available processor on first use.
+     *
+     * @return the default loop group
+     * @throws IOException if the selectors could not be opened
+     */
+    public static synchronized SelectorLoopGroup getDefaultLoopGroup() throws IOException {
+        if (defaultLoopGroup == null) {
+            defaultLoopGroup = new SelectorLoopGroup();
+        }
+        return defaultLoopGroup;
+    }
+
+    /**
+     * Replaces the default loop group. Channels already opened stay on their previous loop.
+     *
+     * @param group the new default loop group
+     */
+    public static synchronized void setDefaultLoopGroup(final SelectorLoopGroup group) {
+        defaultLoopGroup = group;
+    }
+
+    public static SelDatagramChannel open(final DatagramListener datagramListener, final SocketAddress localAddress) throws IOException {
+        return open(datagramListener, localAddress, getDefaultLoopGroup());
+    }
+
+    public static SelDatagramChannel open(final DatagramListener datagramListener, final SocketAddress localAddress, final SelectorLoopGroup group) throws IOException {
+        return open(datagramListener, localAddress, group, group.getDispatchExecutor());
+    }
+
+    /**
+     * Opens a channel whose listener callbacks run on the given executor instead of the group's one.
+     * Use {@link DispatchExecutors#INLINE} to run them on the selector thread, or
+     * {@link DispatchExecutors#ordered(Executor)} to keep this channel's packets in order.
+     */
+    public static SelDatagramChannel open(final DatagramListener datagramListener, final SocketAddress localAddress, final SelectorLoopGroup group, final Executor dispatchExecutor) throws IOException {
+        final DatagramChannel dc = DatagramChannel.open();
         try {
-            selector = Selector.open();
-
-            while (!selector.isOpen()) Thread.yield();
-
-            final Runnable task = new Runnable() {
-                public void run() {
-                    while (true) {
-                        try {
-                            final int n;
-
-                            synchronized (obj) {
-                            }
-                            n = selector.select();
-
-                            if (n == 0) {
-                                Thread.sleep(50);
-                                Thread.yield();
-                                continue;
-                            }
-
-                            final Set keys = selector.selectedKeys();
-
-                            // Iterate through the Set of keys.
-                            for (Iterator i = keys.iterator(); i.hasNext();) {
-                                // Get a key from the set, and remove it from the set
-                                final SelectionKey key = (SelectionKey) i.next();
-                                i.remove();
-
-                                // Get the channel associated with the key
-                                final DatagramChannel c = (DatagramChannel) key.channel();
-
-                                if (key.isValid() && key.isReadable()) {
-                                    final SelDatagramChannel sdc = (SelDatagramChannel) key.attachment();
-
-                                    if (sdc == null) {
-                                        // Discard Packet
-                                        c.receive(ByteBuffer.allocate(0));
-                                        continue;
-                                    }
-
-                                    final ByteBuffer b = ByteBuffer.allocateDirect(1450);
-                                    final SocketAddress clientAddress;
-                                    synchronized (sdc) {
-                                        clientAddress = sdc.channel.receive(b);
-                                    }
-                                    // If we got the datagram successfully, broadcast the Event
-                                    if (clientAddress != null) {
-                                        // Execute in a different Thread avoid serialization
-                                        if (sdc.datagramListener != null) {
-                                            executorService.submit(new Runnable() {
-                                                public void run() {
-                                                    sdc.datagramListener.datagramReceived(sdc, b, clientAddress);
-                                                }
-                                            });
-                                        }
-                                    }
-
-                                }
-                            }
-
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        }
-                        catch (Throwable t) {
-                            t.printStackTrace();
-                        }
-                    }
-                }
-            };
+            dc.configureBlocking(false);
+            dc.socket().bind(localAddress);
+        } catch (IOException e) {
+            dc.close();
+            throw e;
+        }
+        final SelDatagramChannel c = new SelDatagramChannel(dc, group.next(localAddress), group.getBufferPool(), dispatchExecutor, datagramListener);
+        c.loop.register(c);
+        return c;
+    }
 
-            executorService.submit(task);
+    /**
+     * Called by the owning loop when the channel is readable. Reads up to batchSize datagrams
+     * before returning to select.
+     *
+     * @param readyNanos when the selector reported the channel ready, 0 if latency is not recorded
+     */
+    void read(final long readyNanos) throws IOException {
+        final DatagramListener listener = datagramListener;
+        final int max = batchSize;
+        if (max > 1 && listener instanceof DatagramBatchListener) {
+            readBatch((DatagramBatchListener) listener, max, readyNanos);
+        } else {
+            for (int i = 0; i < max; i++) {
+                if (!readOne(listener, readyNanos)) {
+                    break;
+                }
+            }
+        }
+    }
 
+    private SocketAddress receive(final ByteBuffer b) throws IOException {
+        try {
+            synchronized (this) {
+                return channel.isOpen() ? channel.receive(b) : null;
+            }
         } catch (IOException e) {
-            e.printStackTrace();
+            bufferPool.release(b);
+            throw e;
         }
     }
 
-    protected SelDatagramChannel(final DatagramChannel channel, final DatagramListener datagramListener) {
-        this.channel = channel;
-        this.datagramListener = datagramListener;
+    private void recordLatency(final long readyNanos) {
+        final LatencyHistogram h = loop.getLatencyHistogram();
+        if (h != null && readyNanos != 0) {
+            h.record(System.nanoTime() - readyNanos);
+        }
     }
 
-    public static SelDatagramChannel open(final DatagramListener datagramListener, final SocketAddress localAddress) throws IOException {
-        synchronized (executorService) {
-            if (selector == null) {
-                init();
+    private boolean readOne(final DatagramListener listener, final long readyNanos) throws IOException {
+        final ByteBuffer b = bufferPool.acquire();
+        final SocketAddress clientAddress = receive(b);
+        // If we got the datagram successfully, broadcast the Event
+        if (clientAddress != null && listener != null) {
+            final Executor executor = dispatchExecutor;
+            if (executor == DispatchExecutors.INLINE) {
+                recordLatency(readyNanos);
+                listener.datagramReceived(this, b, clientAddress);
+            } else {
+                // Execute in a different Thread avoid serialization
+                final Dispatch d = takeDispatch(1);
+                d.buffers[0] = b;
+                d.addresses[0] = clientAddress;
+                d.start(listener, 1, false, readyNanos);
+                executor.execute(d);
             }
+        } else {
+            bufferPool.release(b);
         }
+        return clientAddress != null;
+    }
 
-        final DatagramChannel dc = DatagramChannel.open();
-        dc.configureBlocking(false);
-        dc.socket().bind(localAddress);
-        final SelDatagramChannel c = new SelDatagramChannel(dc, datagramListener);
-        synchronized (obj) {
-            selector.wakeup();
-            dc.register(selector, SelectionKey.OP_READ, c);
+    private void readBatch(final DatagramBatchListener listener, final int max, final long readyNanos) throws IOException {
+        final Executor executor = dispatchExecutor;
+        final boolean inline = executor == DispatchExecutors.INLINE;
+        final Dispatch d;
+        final ByteBuffer[] buffers;
+        final SocketAddress[] addresses;
+        if (inline) {
+            d = null;
+            if (batchBuffers.length < max) {
+                batchBuffers = new ByteBuffer[max];
+                batchAddresses = new SocketAddress[max];
+            }
+            buffers = batchBuffers;
+            addresses = batchAddresses;
+        } else {
+            d = takeDispatch(max);
+            buffers = d.buffers;
+            addresses = d.addresses;
+        }
+        int n = 0;
+        try {
+            while (n < max) {
+                final ByteBuffer b = bufferPool.acquire();
+                final SocketAddress clientAddress = receive(b);
+                if (clientAddress == null) {
+                    bufferPool.release(b);
+                    break;
+                }
+                buffers[n] = b;
+                addresses[n++] = clientAddress;
+            }
+        } finally {
+            if (n == 0) {
+                if (d != null) {
+                    recycle(d);
+                }
+            } else if (inline) {
+                try {
+                    recordLatency(readyNanos);
+                    listener.datagramsReceived(this, buffers, addresses, n);
+                } finally {
+                    clear(buffers, addresses, n);
+                }
+            } else {
+                d.start(listener, n, true, readyNanos);
+                executor.execute(d);
+            }
+        }
+    }
+
+    private static void clear(final ByteBuffer[] buffers, final SocketAddress[] addresses, final int count) {
+        for (int i = 0; i < count; i++) {
+            buffers[i] = null;
+            addresses[i] = null;
+        }
+    }
+
+    /**
+     * Pops a recycled dispatch task with room for at least max datagrams. Only the owning
+     * selector loop pops, so the stack cannot see ABA.
+     */
+    private Dispatch takeDispatch(final int max) {
+        for (;;) {
+            final Dispatch d = freeDispatches.get();
+            if (d == null) {
+                return new Dispatch(max);
+            }
+            if (freeDispatches.compareAndSet(d, d.next)) {
+                d.next = null;
+                return d.buffers.length < max ? new Dispatch(max) : d;
+            }
+        }
+    }
+
+    private void recycle(final Dispatch d) {
+        for (;;) {
+            final Dispatch head = freeDispatches.get();
+            d.next = head;
+            if (freeDispatches.compareAndSet(head, d)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Hands the datagrams of one wakeup to a non-inline executor. Returned to the channel once
+     * the listener is done, so steady traffic does not allocate per packet or per wakeup.
+     */
+    private final class Dispatch implements Runnable {
+        final ByteBuffer[] buffers;
+        final SocketAddress[] addresses;
+        DatagramListener listener;
+        int count;
+        boolean batch;
+        long readyNanos;
+        Dispatch next;
+
+        Dispatch(final int max) {
+            buffers = new ByteBuffer[max];
+            addresses = new SocketAddress[max];
+        }
+
+        void start(final DatagramListener listener, final int count, final boolean batch, final long readyNanos) {
+            this.listener = listener;
+            this.count = count;
+            this.batch = batch;
+            this.readyNanos = readyNanos;
+        }
+
+        public void run() {
+            try {
+                recordLatency(readyNanos);
+                if (batch) {
+                    ((DatagramBatchListener) listener).datagramsReceived(SelDatagramChannel.this, buffers, addresses, count);
+                } else {
+                    listener.datagramReceived(SelDatagramChannel.this, buffers[0], addresses[0]);
+                }
+            } finally {
+                clear(buffers, addresses, count);
+                listener = null;
+                recycle(this);
+            }
         }
-        return c;
     }
 
     public int send(final ByteBuffer src, final SocketAddress target) throws IOException {
         return this.channel.send(src, target);
     }
 
-    public void close() throws IOException {
-        final SelectionKey k = channel.keyFor(selector);
-        if (k != null) {
-            synchronized (obj) {
-                selector.wakeup();
-                k.cancel();
-            }
+    public int sendBatch(final ByteBuffer[] srcs, final SocketAddress[] targets, final int count) throws IOException {
+        int sent = 0;
+        while (sent < count && channel.send(srcs[sent], targets[sent]) > 0) {
+            sent++;
         }
+        return sent;
+    }
+
+    public void release(final ByteBuffer buffer) {
+        bufferPool.release(buffer);
+    }
+
+    public void close() throws IOException {
+        loop.cancel(channel);
         synchronized (this) {
             channel.close();
         }
@@ -143,4 +294,37 @@ public class SelDatagramChannel implements ListenerDatagramChannel {
     public void setDatagramListener(DatagramListener listener) {
         this.datagramListener = listener;
     }
-}
\ No newline at end of file
+
+    public void setDispatchExecutor(final Executor dispatchExecutor) {
+        this.dispatchExecutor = dispatchExecutor;
+    }
+
+    public Executor getDispatchExecutor() {
+        return dispatchExecutor;
+    }
+
+    /**
+     * Sets how many datagrams are drained per selector wakeup. With a {@link DatagramBatchListener}
+     * they are handed over in a single call; plain listeners still get one call per datagram.
+     *
+     * @param batchSize maximum datagrams read per wakeup, 1 to read a single one
+     */
+    public void setBatchSize(final int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public SelectorLoop getLoop() {
+        return loop;
+    }
+
+    public int getLocalPort() {
+        return channel.socket().getLocalPort();
+    }
+}
@@ -0,0 +1,167 @@
+package org.xmpp.jnodes.nio;
+
+import org.zoolu.tools.NamingThreadFactory;
+
+import java.io.IOException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A single Selector serviced by its own thread.
+ * Registrations and cancellations are queued and applied by the loop thread itself,
+ * so callers never contend on the selector lock. A queued task wakes the selector at most
+ * once per select, and the loop never sleeps: it either blocks in select or, in busy-poll
+ * mode, spins on selectNow.
+ */
+public class SelectorLoop implements Runnable {
+
+    private final Selector selector;
+    private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<Runnable>();
+    private final Thread thread;
+    private final AtomicBoolean wakenUp = new AtomicBoolean(false);
+    private volatile boolean running = true;
+    private volatile boolean busyPoll = false;
+    private volatile LatencyHistogram latencyHistogram;
+
+    public SelectorLoop(final String name) throws IOException {
+        this.selector = Selector.open();
+        this.thread = new NamingThreadFactory(name).newThread(this);
+        this.thread.start();
+    }
+
+    /**
+     * Queues a task to be run by the loop thread before its next select.
+     *
+     * @param task the task
+     */
+    public void execute(final Runnable task) {
+        pendingTasks.offer(task);
+        if (!inLoop() && wakenUp.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    void register(final SelDatagramChannel sdc) {
+        execute(new Runnable() {
+            public void run() {
+                try {
+                    sdc.channel.register(selector, SelectionKey.OP_READ, sdc);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    void cancel(final DatagramChannel channel) {
+        execute(new Runnable() {
+            public void run() {
+                final SelectionKey k = channel.keyFor(selector);
+                if (k != null) {
+                    k.cancel();
+                }
+            }
+        });
+    }
+
+    public boolean inLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * In busy-poll mode the loop spins on selectNow instead of blocking in select, trading one
+     * core per loop for the lowest wakeup latency.
+     *
+     * @param busyPoll whether to busy-poll
+     */
+    public void setBusyPoll(final boolean busyPoll) {
+        this.busyPoll = busyPoll;
+        selector.wakeup();
+    }
+
+    public boolean isBusyPoll() {
+        return busyPoll;
+    }
+
+    /**
+     * Sets the histogram that receives, for every datagram, the time from the selector reporting
+     * it ready to the listener being invoked. Null disables recording.
+     *
+     * @param latencyHistogram the histogram, or null
+     */
+    public void setLatencyHistogram(final LatencyHistogram latencyHistogram) {
+        this.latencyHistogram = latencyHistogram;
+    }
+
+    public LatencyHistogram getLatencyHistogram() {
+        return latencyHistogram;
+    }
+
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void runPendingTasks() {
+        Runnable task;
+        while ((task = pendingTasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                t.printStackTrace();
+            }
+        }
+    }
+
+    public void run() {
+        while (running) {
+            try {
+                wakenUp.set(false);
+
+                final int n;
+                if (busyPoll || !pendingTasks.isEmpty()) {
+                    n = selector.selectNow();
+                } else {
+                    n = selector.select();
+                }
+
+                runPendingTasks();
+
+                if (n == 0) {
+                    continue;
+                }
+
+                final long readyNanos = latencyHistogram != null ? System.nanoTime() : 0;
+                final Set<SelectionKey> keys = selector.selectedKeys();
+
+                // Iterate through the Set of keys.
+                for (Iterator<SelectionKey> i = keys.iterator(); i.hasNext();) {
+                    // Get a key from the set, and remove it from the set
+                    final SelectionKey key = i.next();
+                    i.remove();
+
+                    if (key.isValid() && key.isReadable()) {
+                        final SelDatagramChannel sdc = (SelDatagramChannel) key.attachment();
+                        sdc.read(readyNanos);
+                    }
+                }
+
+            } catch (IOException e) {
+                e.printStackTrace();
+            } catch (Throwable t) {
+                t.printStackTrace();
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package org.xmpp.jnodes.nio;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed set of SelectorLoops. Each channel is pinned to one loop for its whole life,
+ * chosen either round-robin or by hashing its local address.
+ */
+public class SelectorLoopGroup {
+
+    public enum Balancing {
+        ROUND_ROBIN, HASH
+    }
+
+    private static final AtomicInteger groupNumber = new AtomicInteger(0);
+
+    private final SelectorLoop[] loops;
+    private final Balancing balancing;
+    private final ByteBufferPool bufferPool;
+    private final Executor dispatchExecutor;
+    private final AtomicInteger next = new AtomicInteger(0);
+
+    public SelectorLoopGroup() throws IOException {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public SelectorLoopGroup(final int size) throws IOException {
+        this(size, Balancing.ROUND_ROBIN);
+    }
+
+    public SelectorLoopGroup(final int size, final Balancing balancing) throws IOException {
+        this(size, balancing, new ByteBufferPool());
+    }
+
+    public SelectorLoopGroup(final int size, final Balancing balancing, final ByteBufferPool bufferPool) throws IOException {
+        this(size, balancing, bufferPool, DispatchExecutors.shared());
+    }
+
+    /**
+     * @param size             number of selectors
+     * @param balancing        how channels are assigned to selectors
+     * @param bufferPool       pool receive buffers are taken from
+     * @param dispatchExecutor executor listener callbacks run on, see {@link DispatchExecutors}
+     * @throws IOException if a selector could not be opened
+     */
+    public SelectorLoopGroup(final int size, final Balancing balancing, final ByteBufferPool bufferPool, final Executor dispatchExecutor) throws IOException {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Invalid number of selectors: " + size);
+        }
+        final String prefix = "SelectorLoop-" + groupNumber.incrementAndGet() + ".";
+        this.loops = new SelectorLoop[size];
+        this.balancing = balancing;
+        this.bufferPool = bufferPool;
+        this.dispatchExecutor = dispatchExecutor;
+        try {
+            for (int i = 0; i < size; i++) {
+                loops[i] = new SelectorLoop(prefix + i);
+            }
+        } catch (IOException e) {
+            shutdown();
+            throw e;
+        }
+    }
+
+    /**
+     * Picks the loop a newly opened channel will be pinned to.
+     *
+     * @param localAddress the local address the channel is bound to
+     * @return the selected loop
+     */
+    public SelectorLoop next(final SocketAddress localAddress) {
+        final int idx;
+        if (balancing == Balancing.HASH && localAddress != null) {
+            idx = (localAddress.hashCode() & Integer.MAX_VALUE) % loops.length;
+        } else {
+            idx = (next.getAndIncrement() & Integer.MAX_VALUE) % loops.length;
+        }
+        return loops[idx];
+    }
+
+    public int size() {
+        return loops.length;
+    }
+
+    public Balancing getBalancing() {
+        return balancing;
+    }
+
+    /**
+     * @return the pool receive buffers of this group's channels are taken from
+     */
+    public ByteBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * @return the executor listener callbacks of this group's channels run on, unless overridden per channel
+     */
+    public Executor getDispatchExecutor() {
+        return dispatchExecutor;
+    }
+
+    /**
+     * Switches every loop of the group in or out of busy-poll mode.
+     *
+     * @see SelectorLoop#setBusyPoll(boolean)
+     */
+    public void setBusyPoll(final boolean busyPoll) {
+        for (final SelectorLoop loop : loops) {
+            loop.setBusyPoll(busyPoll);
+        }
+    }
+
+    /**
+     * Records ready-to-listener latency of every loop of the group into the given histogram.
+     *
+     * @see SelectorLoop#setLatencyHistogram(LatencyHistogram)
+     */
+    public void setLatencyHistogram(final LatencyHistogram latencyHistogram) {
+        for (final SelectorLoop loop : loops) {
+            loop.setLatencyHistogram(latencyHistogram);
+        }
+    }
+
+    public void shutdown() {
+        for (final SelectorLoop loop : loops) {
+            if (loop != null) {
+                loop.shutdown();
+            }
+        }
+    }
+}
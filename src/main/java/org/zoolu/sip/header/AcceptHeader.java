@@ -50,7 +50,7 @@ public class AcceptHeader extends ParametricHeader {
      * @return
      */
     public String getAcceptRange() {
-        return value;
+        return getValue();
     }
 
     /**
@@ -59,6 +59,6 @@ public class AcceptHeader extends ParametricHeader {
      * @param range
      */
     public void setAcceptRange(String range) {
-        value = range;
+        setValue(range);
     }
 }
@@ -47,17 +47,17 @@ public class AlertInfoHeader extends ParametricHeader {
      * @return
      */
     public String getAbsoluteURI() {
-        int begin = value.indexOf('<');
-        int end = value.indexOf('>');
+        int begin = getValue().indexOf('<');
+        int end = getValue().indexOf('>');
         if (begin < 0) {
             begin = 0;
         } else {
             begin++;
         }
         if (end < 0) {
-            end = value.length();
+            end = getValue().length();
         }
-        return value.substring(begin, end);
+        return getValue().substring(begin, end);
     }
 
     /**
@@ -73,6 +73,6 @@ public class AlertInfoHeader extends ParametricHeader {
         if (!absolute_uri.contains(">")) {
             absolute_uri = absolute_uri + ">";
         }
-        value = absolute_uri;
+        setValue(absolute_uri);
     }
 }
@@ -56,7 +56,7 @@ public class ContactHeader extends EndPointHeader {
      */
     public ContactHeader() {
         super(new Header(SipHeaders.Contact, null));
-        value = "*";
+        setValue("*");
     }
 
     public ContactHeader(NameAddress nameaddr) {
@@ -86,7 +86,7 @@ public class ContactHeader extends EndPointHeader {
     }
 
     public boolean isStar() {
-        return value.indexOf('*') >= 0;
+        return getValue().indexOf('*') >= 0;
     }
 
     public boolean hasExpires() {
@@ -53,11 +53,11 @@ public class ContentTypeHeader extends ParametricHeader {
      */
     public String getContentType() {
         String str;
-        int end = (new SipParser(value)).indexOf(';');
+        int end = (new SipParser(getValue())).indexOf(';');
         if (end < 0) {
-            str = value;
+            str = getValue();
         } else {
-            str = value.substring(0, end);
+            str = getValue().substring(0, end);
         }
         return (new SipParser(str)).getString();
     }
@@ -68,7 +68,7 @@ public class ContentTypeHeader extends ParametricHeader {
      * @param cType
      */
     public void setContentType(String cType) {
-        value = cType;
+        setValue(cType);
     }
 
 }
@@ -138,7 +138,7 @@ public abstract class EndPointHeader extends NameAddressHeader {
      *         (that leads to the wildcard in case of ContactHeader)
      */
     public NameAddress getNameAddress() {
-        NameAddress naddr = (new SipParser(value)).getNameAddress();
+        NameAddress naddr = (new SipParser(getValue())).getNameAddress();
         // patch for removing eventual 'tag' or other EndPointHeader parameters from NameAddress
         SipURL url = naddr.getAddress();
         for (String aENDPOINT_PARAMS : ENDPOINTPARAMS) {
@@ -79,7 +79,7 @@ public class EventHeader extends ParametricHeader {
      * @return
      */
     public String getEvent() {
-        return new Parser(value).getWord(delim);
+        return new Parser(getValue()).getWord(delim);
     }
 
     /**
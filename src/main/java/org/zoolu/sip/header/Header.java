@@ -28,6 +28,11 @@
 package org.zoolu.sip.header;
 
 
+import org.zoolu.tools.ByteEncoder;
+
+import java.nio.ByteBuffer;
+
+
 /**
  * Header is the base Class for all SIP Headers
  */
@@ -120,6 +125,27 @@ public class Header {
      * Gets string representation of Header
      */
     public String toString() {
-        return name + ": " + value + "\r\n";
+        return name + ": " + getValue() + "\r\n";
+    }
+
+    /**
+     * Gets the number of bytes written by encodeTo
+     *
+     * @return
+     */
+    public int encodedLength() {
+        return ByteEncoder.length(getName()) + ByteEncoder.length(getValue()) + 4;
+    }
+
+    /**
+     * Writes the string representation of Header into <i>buffer</i>
+     *
+     * @param buffer
+     */
+    public void encodeTo(ByteBuffer buffer) {
+        ByteEncoder.put(buffer, getName());
+        buffer.put((byte) ':').put((byte) ' ');
+        ByteEncoder.put(buffer, getValue());
+        ByteEncoder.putCRLF(buffer);
     }
 }
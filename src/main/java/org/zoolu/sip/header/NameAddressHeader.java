@@ -79,7 +79,7 @@ public abstract class NameAddressHeader extends ParametricHeader {
      * @return
      */
     public NameAddress getNameAddress() {
-        NameAddress naddr = (new SipParser(value)).getNameAddress();
+        NameAddress naddr = (new SipParser(getValue())).getNameAddress();
         return naddr;
     }
 
@@ -89,7 +89,7 @@ public abstract class NameAddressHeader extends ParametricHeader {
      * @param naddr
      */
     public void setNameAddress(NameAddress naddr) {
-        value = naddr.toString();
+        setValue(naddr.toString());
     }
 
 
@@ -101,13 +101,13 @@ public abstract class NameAddressHeader extends ParametricHeader {
      * @returns the index of the semicolon before the first parameter, or -1 if no parameter is present.
      */
     protected int indexOfFirstSemi() {
-        Parser par = new Parser(value);
+        Parser par = new Parser(getValue());
         par.goToSkippingQuoted('>');
-        if (par.getPos() == value.length()) {
+        if (par.getPos() == getValue().length()) {
             par.setPos(0);
         }
         par.goToSkippingQuoted(';');
-        if (par.getPos() < value.length()) {
+        if (par.getPos() < getValue().length()) {
             return par.getPos();
         } else {
             return -1;
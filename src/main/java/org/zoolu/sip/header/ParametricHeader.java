@@ -32,17 +32,60 @@ import org.zoolu.sip.provider.SipParser;
 import org.zoolu.tools.Parser;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 /**
- * Abstract ParametricHeader is the base class for all SIP Headers that include parameters
+ * Abstract ParametricHeader is the base class for all SIP Headers that include parameters.
+ * <p/> Parameters are parsed once, on first access, into an ordered table.
+ * Changes are applied to the table and the header value is encoded again only when it
+ * is next read; parameters that were not changed keep their original text.
+ * A copy of a header of the same class shares its parsed table until either of them changes
+ * a parameter.
  */
 public abstract class ParametricHeader extends Header {
     //public ParametricHeader(String hname)
     //{  super(hname);
     //}
 
+    /**
+     * A header parameter, with the text it was parsed from (null once changed)
+     */
+    private static class Parameter {
+        final String name;
+        String value;
+        String raw;
+
+        Parameter(String name, String value, String raw) {
+            this.name = name;
+            this.value = value;
+            this.raw = raw;
+        }
+    }
+
+    /**
+     * Header value before the parameters
+     */
+    private String prefix;
+    /**
+     * Parameters in header order, null if not parsed yet
+     */
+    private volatile List<Parameter> parameters;
+    /**
+     * First parameter of each name
+     */
+    private Map<String, Parameter> parameterIndex;
+    /**
+     * Whether parameters changed since the value was last encoded
+     */
+    private boolean dirty;
+    /**
+     * Whether the parameter table is shared with a copy, and must be copied before a change
+     */
+    private boolean shared;
+
     /**
      * Costructs the abstract ParametricHeader.
      *
@@ -60,6 +103,17 @@ public abstract class ParametricHeader extends Header {
      */
     protected ParametricHeader(Header hd) {
         super(hd);
+        if (hd instanceof ParametricHeader && hd.getClass() == getClass()) {
+            // same parsing rules: share the parameters, parsing them in hd once for all its copies
+            ParametricHeader other = (ParametricHeader) hd;
+            other.parseParameters();
+            List<Parameter> list = other.parameters;
+            prefix = other.prefix;
+            parameterIndex = other.parameterIndex;
+            parameters = list;
+            shared = true;
+            other.shared = true;
+        }
     }
 
     /** Gets the first word.
@@ -77,10 +131,122 @@ public abstract class ParametricHeader extends Header {
      * @returns the index of the semicolon before the first parameter, or -1 if no parameter is present.
      */
     protected int indexOfFirstSemi() {  //int index=(new Parser(value)).goToSkippingQuoted(';').skipChar().skipWSP().getPos();
+        String value = getValue();
         int index = (new Parser(value)).goToSkippingQuoted(';').getPos();
         return (index >= value.length()) ? -1 : index;
     }
 
+    /**
+     * Builds the parameter table from the header value, if not built yet.
+     * The table is built aside and published at the end, so that concurrent readers
+     * of an unchanged header never see it half built.
+     */
+    private void parseParameters() {
+        if (parameters != null) {
+            return;
+        }
+        List<Parameter> list = new ArrayList<Parameter>(4);
+        Map<String, Parameter> index = new HashMap<String, Parameter>(8);
+        String value = this.value;
+        String first;
+        int semi = value == null ? -1 : indexOfFirstSemi();
+        if (value == null) {
+            first = "";
+        } else if (semi < 0) {
+            first = value;
+        } else {
+            first = value.substring(0, semi);
+            Parser par = new Parser(value, semi);
+            while (par.hasMore()) {
+                int begin = par.getPos();
+                par.skipChar(); // skip ';'
+                String param = par.goToSkippingQuoted(';').getWholeString().substring(begin + 1, par.getPos());
+                Parser ppar = new Parser(param, 0);
+                String pname = ppar.getWord(SipParser.param_separators);
+                String pvalue = null;
+                ppar.skipWSP();
+                if (ppar.hasMore() && ppar.nextChar() == '=') {
+                    ppar.skipChar();
+                    pvalue = ppar.getWordSkippingQuoted(SipParser.param_separators);
+                }
+                Parameter p = new Parameter(pname, pvalue, value.substring(begin, par.getPos()));
+                list.add(p);
+                if (pname.length() > 0 && !index.containsKey(pname)) {
+                    index.put(pname, p);
+                }
+            }
+        }
+        prefix = first;
+        parameterIndex = index;
+        // volatile write last: publishes prefix and index too
+        parameters = list;
+    }
+
+    /**
+     * Copies the parameter table before a change, if it is shared with another header.
+     */
+    private void ownParameters() {
+        if (!shared) {
+            return;
+        }
+        List<Parameter> list = new ArrayList<Parameter>(parameters.size() + 1);
+        Map<String, Parameter> index = new HashMap<String, Parameter>(8);
+        for (Parameter p : parameters) {
+            Parameter copy = new Parameter(p.name, p.value, p.raw);
+            list.add(copy);
+            if (copy.name.length() > 0 && !index.containsKey(copy.name)) {
+                index.put(copy.name, copy);
+            }
+        }
+        parameterIndex = index;
+        parameters = list;
+        shared = false;
+    }
+
+    /**
+     * Marks the header value as out of date with respect to the parameter table.
+     */
+    private void changed() {
+        dirty = true;
+    }
+
+    /**
+     * Gets value of Header, encoding it again if any parameter has changed
+     *
+     * @return
+     */
+    public String getValue() {
+        if (dirty) {
+            StringBuilder sb = new StringBuilder(prefix);
+            for (Parameter p : parameters) {
+                if (p.raw != null) {
+                    sb.append(p.raw);
+                } else {
+                    sb.append(';').append(p.name);
+                    if (p.value != null) {
+                        sb.append('=').append(p.value);
+                    }
+                }
+            }
+            value = sb.toString();
+            dirty = false;
+        }
+        return value;
+    }
+
+    /**
+     * Sets value of Header, dropping the parsed parameters
+     *
+     * @param hvalue
+     */
+    public void setValue(String hvalue) {
+        super.setValue(hvalue);
+        parameters = null;
+        parameterIndex = null;
+        dirty = false;
+        shared = false;
+    }
+
     /**
      * Gets the value of specified parameter.
      *
@@ -89,11 +255,9 @@ public abstract class ParametricHeader extends Header {
      * @returns the parameter value or null if parameter does not exist or doesn't have a value (i.e. in case of flag parameter).
      */
     public String getParameter(String name) {
-        int index = indexOfFirstSemi();
-        if (index < 0) {
-            return null;
-        }
-        return (new SipParser((new Parser(getValue(), index)).skipChar().skipWSP())).getParameter(name);
+        parseParameters();
+        Parameter p = parameterIndex.get(name);
+        return p == null ? null : p.value;
     }
 
     /**
@@ -103,11 +267,14 @@ public abstract class ParametricHeader extends Header {
      * @returns a List of String
      */
     public List getParameterNames() {
-        int index = indexOfFirstSemi();
-        if (index < 0) {
-            return new ArrayList();
+        parseParameters();
+        List<String> names = new ArrayList<String>(parameters.size());
+        for (Parameter p : parameters) {
+            if (p.name.length() > 0) {
+                names.add(p.name);
+            }
         }
-        return (new SipParser((new Parser(getValue(), index)).skipChar().skipWSP())).getParameters();
+        return names;
     }
 
 
@@ -118,11 +285,8 @@ public abstract class ParametricHeader extends Header {
      * @return
      */
     public boolean hasParameter(String name) {
-        int index = indexOfFirstSemi();
-        if (index < 0) {
-            return false;
-        }
-        return (new SipParser((new Parser(getValue(), index)).skipChar().skipWSP())).hasParameter(name);
+        parseParameters();
+        return parameterIndex.containsKey(name);
     }
 
 
@@ -132,7 +296,8 @@ public abstract class ParametricHeader extends Header {
      * @return
      */
     public boolean hasParameters() {
-        return indexOfFirstSemi() >= 0;
+        parseParameters();
+        return !parameters.isEmpty();
     }
 
 
@@ -143,12 +308,10 @@ public abstract class ParametricHeader extends Header {
         if (!hasParameters()) {
             return;
         }
-        String header = getValue();
-        //System.out.println(header);
-        int i = header.indexOf(';');
-        header = header.substring(0, i);
-        //System.out.println(header);
-        setValue(header);
+        ownParameters();
+        parameters.clear();
+        parameterIndex.clear();
+        changed();
     }
 
 
@@ -158,29 +321,20 @@ public abstract class ParametricHeader extends Header {
      * @param name
      */
     public void removeParameter(String name) {
-        int index = indexOfFirstSemi();
-        if (index < 0) {
+        parseParameters();
+        ownParameters();
+        Parameter p = parameterIndex.remove(name);
+        if (p == null) {
             return;
         }
-        String header = getValue();
-        Parser par = new Parser(header, index);
-        while (par.hasMore()) {
-            int beginParam = par.getPos();
-            par.skipChar();
-            if (par.getWord(SipParser.param_separators).equals(name)) {
-                String top = header.substring(0, beginParam);
-                par.goToSkippingQuoted(';');
-                String bottom = "";
-                if (par.hasMore()) {
-                    bottom = header.substring(par.getPos());
-                }
-                header = top.concat(bottom);
-                setValue(header);
-                return;
-                //par=new Parser(header,par.getPos());
+        parameters.remove(p);
+        for (Parameter other : parameters) {
+            if (other.name.equals(name)) {
+                parameterIndex.put(name, other);
+                break;
             }
-            par.goTo(';');
         }
+        changed();
     }
 
 
@@ -195,14 +349,17 @@ public abstract class ParametricHeader extends Header {
         if (getValue() == null) {
             setValue("");
         }
-        if (hasParameter(name)) {
-            removeParameter(name);
-        }
-        String header = getValue();
-        header = header.concat(";" + name);
-        if (value != null) {
-            header = header.concat("=" + value);
+        parseParameters();
+        ownParameters();
+        Parameter p = parameterIndex.get(name);
+        if (p != null) {
+            p.value = value;
+            p.raw = null;
+        } else {
+            p = new Parameter(name, value, null);
+            parameters.add(p);
+            parameterIndex.put(name, p);
         }
-        setValue(header);
+        changed();
     }
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2005 Luca Veltri - University of Parma - Italy
+ *
+ *  This file is part of MjSip (http://www.mjsip.org)
+ *
+ *  MjSip is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  MjSip is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with MjSip; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *  Author(s):
+ *  Luca Veltri (luca.veltri@unipr.it)
+ *
+ *  Modified:
+ *  Benhur Langoni (bhlangonijr@gmail.com)
+ *  Thiago Camargo (barata7@gmail.com)
+ */
+
+package org.zoolu.sip.header;
+
+
+import java.nio.ByteBuffer;
+
+/**
+ * Header backed by a region of the raw message bytes.
+ * Name and value are decoded only the first time they are requested;
+ * well-known header names are resolved to the SipHeaders constants without decoding.
+ */
+public class RawHeader extends Header {
+
+    private static final String[] KNOWN_NAMES = {
+            SipHeaders.Via, SipHeaders.Via_short, SipHeaders.From, SipHeaders.From_short,
+            SipHeaders.To, SipHeaders.To_short, SipHeaders.CallID, SipHeaders.CallID_short,
+            SipHeaders.CSeq, SipHeaders.Contact, SipHeaders.Contact_short, SipHeaders.Max_Forwards,
+            SipHeaders.Content_Type, SipHeaders.Content_Type_short, SipHeaders.Content_Length,
+            SipHeaders.Content_Length_short, SipHeaders.Route, SipHeaders.Record_Route,
+            SipHeaders.User_Agent, SipHeaders.Server, SipHeaders.Allow, SipHeaders.Supported,
+            SipHeaders.Supported_short, SipHeaders.Expires, SipHeaders.Authorization,
+            SipHeaders.WWW_Authenticate, SipHeaders.Proxy_Authenticate, SipHeaders.Proxy_Authorization,
+            SipHeaders.Event, SipHeaders.Event_short, SipHeaders.Allow_Events, SipHeaders.Subscription_State,
+            SipHeaders.Date, SipHeaders.Require, SipHeaders.Accept
+    };
+
+    private byte[] data;
+    private final int nameOffset;
+    private final int nameLength;
+    private final int valueOffset;
+    private final int valueLength;
+
+    /**
+     * Creates a new RawHeader over <i>data</i>. The array must not be modified afterwards.
+     *
+     * @param data
+     * @param nameOffset
+     * @param nameLength
+     * @param valueOffset
+     * @param valueLength
+     */
+    public RawHeader(byte[] data, int nameOffset, int nameLength, int valueOffset, int valueLength) {
+        this.data = data;
+        this.nameOffset = nameOffset;
+        this.nameLength = nameLength;
+        this.valueOffset = valueOffset;
+        this.valueLength = valueLength;
+    }
+
+    /**
+     * Gets name of Header
+     */
+    public String getName() {
+        if (name == null) {
+            name = knownName();
+            if (name == null) {
+                name = new String(data, nameOffset, nameLength);
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Gets value of Header
+     */
+    public String getValue() {
+        if (value == null && data != null) {
+            value = new String(data, valueOffset, valueLength);
+        }
+        return value;
+    }
+
+    /**
+     * Sets value of Header
+     */
+    public void setValue(String hvalue) {
+        getName();
+        value = hvalue;
+        data = null;
+    }
+
+    /**
+     * Gets string representation of Header
+     */
+    public String toString() {
+        return getName() + ": " + getValue() + "\r\n";
+    }
+
+    /**
+     * Gets the number of bytes written by encodeTo
+     */
+    public int encodedLength() {
+        if (data == null) {
+            return super.encodedLength();
+        }
+        return nameLength + valueLength + 4;
+    }
+
+    /**
+     * Writes the Header into <i>buffer</i>, copying the original bytes while the value is unchanged
+     */
+    public void encodeTo(ByteBuffer buffer) {
+        if (data == null) {
+            super.encodeTo(buffer);
+            return;
+        }
+        buffer.put(data, nameOffset, nameLength);
+        buffer.put((byte) ':').put((byte) ' ');
+        buffer.put(data, valueOffset, valueLength);
+        buffer.put((byte) '\r').put((byte) '\n');
+    }
+
+    private String knownName() {
+        for (String known : KNOWN_NAMES) {
+            if (known.length() == nameLength && regionEquals(known)) {
+                return known;
+            }
+        }
+        return null;
+    }
+
+    private boolean regionEquals(String s) {
+        for (int i = 0; i < nameLength; i++) {
+            if (data[nameOffset + i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -29,6 +29,9 @@ package org.zoolu.sip.header;
 
 
 import org.zoolu.sip.address.SipURL;
+import org.zoolu.tools.ByteEncoder;
+
+import java.nio.ByteBuffer;
 
 
 /**
@@ -79,6 +82,24 @@ public class RequestLine {
         return method + " " + url + " SIP/2.0\r\n";
     }
 
+    /**
+     * Gets the number of bytes written by encodeTo
+     */
+    public int encodedLength() {
+        return ByteEncoder.length(method) + ByteEncoder.length(String.valueOf(url)) + 11;
+    }
+
+    /**
+     * Writes the RequestLine into <i>buffer</i>
+     */
+    public void encodeTo(ByteBuffer buffer) {
+        ByteEncoder.put(buffer, method);
+        buffer.put((byte) ' ');
+        ByteEncoder.put(buffer, String.valueOf(url));
+        ByteEncoder.put(buffer, " SIP/2.0");
+        ByteEncoder.putCRLF(buffer);
+    }
+
     public String getMethod() {
         return method;
     }
@@ -27,6 +27,11 @@
 
 package org.zoolu.sip.header;
 
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+
 /**
  * SipHeaders extends class sip.header.SipHeaders by adding new SIP header names.
  */
@@ -113,4 +118,60 @@ public class SipHeaders extends BaseSipHeaders {
         return same(str, Subscription_State);
     }
 
+    //****************************** Canonical names *******************************/
+
+    /**
+     * Compact forms and the long names they stand for
+     */
+    private static final String[][] COMPACT_FORMS = {
+            {CallID_short, CallID}, {Contact_short, Contact}, {Content_Length_short, Content_Length},
+            {Content_Type_short, Content_Type}, {From_short, From}, {Subject_short, Subject},
+            {Supported_short, Supported}, {To_short, To}, {Via_short, Via}, {Event_short, Event}
+    };
+
+    private static final String[] LONG_NAMES = {
+            Accept, AlertInfo, Allow, AuthenticationInfo, Authorization, CallID, Contact, Content_Length,
+            Content_Type, CSeq, Date, Expires, From, User_Agent, Max_Forwards, Proxy_Authenticate,
+            Proxy_Authorization, Proxy_Require, Record_Route, Require, Route, Server, Subject, Supported,
+            To, Unsupported, Via, WWW_Authenticate, Refer_To, Referred_By, Event, Allow_Events, Subscription_State
+    };
+
+    /**
+     * Canonical names by constant instance, to resolve the constants above without any case folding
+     */
+    private static final Map<String, String> canonicalByInstance = new IdentityHashMap<String, String>();
+    /**
+     * Canonical names by lower-case name
+     */
+    private static final Map<String, String> canonicalByLowerCase = new HashMap<String, String>();
+
+    static {
+        for (String name : LONG_NAMES) {
+            canonicalByInstance.put(name, name);
+            canonicalByLowerCase.put(name.toLowerCase(Locale.US), name);
+        }
+        for (String[] form : COMPACT_FORMS) {
+            canonicalByInstance.put(form[0], form[1]);
+            canonicalByLowerCase.put(form[0].toLowerCase(Locale.US), form[1]);
+        }
+    }
+
+    /**
+     * Gets the canonical name of a header: the long name constant for standard headers
+     * (compact forms included, any case), the lower-case name otherwise.
+     * Two names denote the same header if and only if their canonical names are equal.
+     *
+     * @param hname
+     * @return
+     */
+    public static String getCanonicalName(String hname) {
+        String canonical = canonicalByInstance.get(hname);
+        if (canonical != null) {
+            return canonical;
+        }
+        String lower = hname.toLowerCase(Locale.US);
+        canonical = canonicalByLowerCase.get(lower);
+        return canonical != null ? canonical : lower;
+    }
+
 }
@@ -28,6 +28,11 @@
 package org.zoolu.sip.header;
 
 
+import org.zoolu.tools.ByteEncoder;
+
+import java.nio.ByteBuffer;
+
+
 /**
  * SIP Status-line, i.e. the first line of a response message
  */
@@ -69,6 +74,24 @@ public class StatusLine {
         return "SIP/2.0 " + code + " " + reason + "\r\n";
     }
 
+    /**
+     * Gets the number of bytes written by encodeTo
+     */
+    public int encodedLength() {
+        return ByteEncoder.length(code) + ByteEncoder.length(reason) + 11;
+    }
+
+    /**
+     * Writes the StatusLine into <i>buffer</i>
+     */
+    public void encodeTo(ByteBuffer buffer) {
+        ByteEncoder.put(buffer, "SIP/2.0 ");
+        ByteEncoder.put(buffer, code);
+        buffer.put((byte) ' ');
+        ByteEncoder.put(buffer, reason);
+        ByteEncoder.putCRLF(buffer);
+    }
+
     public int getCode() {
         return code;
     }
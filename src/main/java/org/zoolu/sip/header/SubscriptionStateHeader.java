@@ -80,7 +80,7 @@ public class SubscriptionStateHeader extends ParametricHeader {
      * @return
      */
     public String getState() {
-        return new Parser(value).getWord(delim);
+        return new Parser(getValue()).getWord(delim);
     }
 
     /**
@@ -92,7 +92,7 @@ public class ViaHeader extends ParametricHeader {
      * @return
      */
     public String getProtocol() {
-        SipParser par = new SipParser(value);
+        SipParser par = new SipParser(getValue());
         return par.goTo('/').skipChar().goTo('/').skipChar().skipWSP().getString();
     }
 
@@ -102,12 +102,12 @@ public class ViaHeader extends ParametricHeader {
      * @return
      */
     public String getSentBy() {
-        SipParser par = new SipParser(value);
+        SipParser par = new SipParser(getValue());
         par.goTo('/').skipChar().goTo('/').skipString().skipWSP();
         if (!par.hasMore()) {
             return null;
         }
-        String sentby = value.substring(par.getPos(), par.indexOfSeparator());
+        String sentby = getValue().substring(par.getPos(), par.indexOfSeparator());
         return sentby;
     }
 
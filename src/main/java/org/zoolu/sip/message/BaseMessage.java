@@ -33,15 +33,25 @@ import org.zoolu.sip.address.NameAddress;
 import org.zoolu.sip.address.SipURL;
 import org.zoolu.sip.header.*;
 import org.zoolu.sip.provider.MethodIdentifier;
+import org.zoolu.sip.provider.SipByteParser;
 import org.zoolu.sip.provider.SipParser;
+import org.zoolu.tools.ByteEncoder;
 
 import java.net.DatagramPacket;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
  * Class BaseMessage implements a generic SIP Message.
+ * <p/> The Message is parsed once, when it is costructed, into a start line, an ordered list
+ * of headers indexed by name, and a body. Every operation works on that structure;
+ * the message text is produced again only by toString() or encodeTo().
  */
 public abstract class BaseMessage {
 
@@ -86,21 +96,47 @@ public abstract class BaseMessage {
     /** Packet length */
     //protected int packet_length;
 
+    private RequestLine request_line;
+    private StatusLine status_line;
+
+    private List<Header> headers;
+    /**
+     * Headers of the same type by canonical name, each List in Message order
+     */
+    private Map<String, List<Header>> headerIndex;
     /**
-     * The message string
+     * Typed headers already parsed, by canonical name
      */
-    private String message;
+    private Map<String, TypedHeader> typedHeaders;
+    /**
+     * Whether headers and headerIndex are shared with a copy of this Message, and must be
+     * copied before being changed
+     */
+    private boolean sharedHeaders;
+    private String body;
 
+    /**
+     * Raw message bytes the body is decoded from on first access, when parsed from bytes
+     */
+    private byte[] rawBody;
+    private int rawBodyOffset;
+    private int rawBodyLength;
 
-    private final String SIP_RESPONSEPRE = "SIP/";
 
     /**
      * Inits empty Message
      */
-    private void init() {  //message="";
+    private void init() {
         remoteAddr = null;
         remotePort = 0;
         transportProto = null;
+        request_line = null;
+        status_line = null;
+        headers = null;
+        headerIndex = null;
+        typedHeaders = null;
+        body = null;
+        rawBody = null;
     }
 
     /**
@@ -108,7 +144,7 @@ public abstract class BaseMessage {
      */
     public BaseMessage() {
         init();
-        message = "";
+        clearHeaders();
     }
 
     /**
@@ -120,7 +156,9 @@ public abstract class BaseMessage {
      */
     public BaseMessage(byte[] data, int offset, int len) {
         init();
-        message = new String(data, offset, len).trim();
+        byte[] copy = new byte[len];
+        System.arraycopy(data, offset, copy, 0, len);
+        parseIt(copy, 0, len);
     }
 
     /**
@@ -129,8 +167,21 @@ public abstract class BaseMessage {
      * @param packet
      */
     public BaseMessage(DatagramPacket packet) {
+        this(packet.getData(), packet.getOffset(), packet.getLength());
+    }
+
+    /**
+     * Costructs a new Message from the bytes between position and limit of <i>buffer</i>.
+     * The buffer position is left untouched; the bytes are copied once, so the buffer
+     * can be reused (or released to its pool) right after.
+     *
+     * @param buffer
+     */
+    public BaseMessage(ByteBuffer buffer) {
         init();
-        message = new String(packet.getData(), packet.getOffset(), packet.getLength()).trim();
+        byte[] copy = new byte[buffer.remaining()];
+        buffer.duplicate().get(copy);
+        parseIt(copy, 0, copy.length);
     }
 
     /**
@@ -140,20 +191,33 @@ public abstract class BaseMessage {
      */
     public BaseMessage(String str) {
         init();
-        message = str.trim();
+        parseIt(str);
     }
 
     /**
-     * Costructs a new Message
+     * Costructs a new Message.
+     * Headers and body are shared with <i>msg</i>; the header tables are copied
+     * only when either Message adds, sets or removes a header.
      *
      * @param msg
      */
-    public BaseMessage(BaseMessage msg) {  //message=new String(msg.message);
-        message = msg.message;
+    public BaseMessage(BaseMessage msg) {
+        init();
         remoteAddr = msg.remoteAddr;
         remotePort = msg.remotePort;
         transportProto = msg.transportProto;
         //packet_length=msg.packet_length;
+        request_line = msg.request_line;
+        status_line = msg.status_line;
+        headers = msg.headers;
+        headerIndex = msg.headerIndex;
+        // the cached typed headers are never handed out, so both Messages may keep them
+        typedHeaders = new ConcurrentHashMap<String, TypedHeader>(msg.typedHeaders);
+        sharedHeaders = msg.sharedHeaders = true;
+        body = msg.body;
+        rawBody = msg.rawBody;
+        rawBodyOffset = msg.rawBodyOffset;
+        rawBodyLength = msg.rawBodyLength;
     }
 
     /**
@@ -163,20 +227,129 @@ public abstract class BaseMessage {
     //{  return new Message(message);
     //}
 
+    private void clearHeaders() {
+        headers = new ArrayList<Header>();
+        headerIndex = new HashMap<String, List<Header>>();
+        typedHeaders = new ConcurrentHashMap<String, TypedHeader>(4);
+        sharedHeaders = false;
+    }
+
+    /**
+     * Gives this Message its own copy of the header tables, if they are shared with a copy.
+     */
+    private void ensureOwnHeaders() {
+        if (!sharedHeaders) {
+            return;
+        }
+        headers = new ArrayList<Header>(headers);
+        Map<String, List<Header>> index = new HashMap<String, List<Header>>(headerIndex.size() * 2);
+        for (Map.Entry<String, List<Header>> e : headerIndex.entrySet()) {
+            index.put(e.getKey(), new ArrayList<Header>(e.getValue()));
+        }
+        headerIndex = index;
+        sharedHeaders = false;
+    }
+
     /**
      * Sets the entire message
+     */
+    public void setMessage(String str) {
+        parseIt(str);
+    }
+
+    /**
+     * Parses the Message from a String.
      *
-     * @param message
+     * @param str
      */
-    public void setMessage(String message) {
-        this.message = message.trim();
+    private void parseIt(final String str) {
+        request_line = null;
+        status_line = null;
+        body = null;
+        rawBody = null;
+        SipParser par = new SipParser(str);
+        final String version = par.getRemainingString().length() > 4 ? par.getRemainingString().substring(0, 4) : "q";
+        if (version.equalsIgnoreCase("SIP/")) {
+            status_line = par.getStatusLine();
+        } else {
+            request_line = par.getRequestLine();
+        }
+
+        clearHeaders();
+        Header h = par.getHeader();
+        while (h != null) {
+            insertHeader(headers.size(), h);
+            h = par.getHeader();
+        }
+        ContentLengthHeader clh = getContentLengthHeader();
+        if (clh != null) {
+            int len = clh.getContentLength() + 100; // TODO Remove Patch for Buggy SIP Servers
+            body = par.getString(len);
+        } else if (getContentTypeHeader() != null) {
+            body = par.getRemainingString();
+            if (body.length() == 0) {
+                body = null;
+            }
+        }
+    }
+
+    /**
+     * Parses the Message directly from its bytes. Headers are kept as RawHeaders and decoded on demand.
+     *
+     * @param data
+     * @param offset
+     * @param len
+     */
+    private void parseIt(final byte[] data, final int offset, final int len) {
+        request_line = null;
+        status_line = null;
+        body = null;
+        rawBody = null;
+        SipByteParser par = new SipByteParser(data, offset, len);
+        if (par.isStatusLine()) {
+            status_line = new SipParser(par.getFirstLine()).getStatusLine();
+        } else {
+            request_line = new SipParser(par.getFirstLine()).getRequestLine();
+        }
+
+        clearHeaders();
+        Header h = par.getHeader();
+        while (h != null) {
+            insertHeader(headers.size(), h);
+            h = par.getHeader();
+        }
+        ContentLengthHeader clh = getContentLengthHeader();
+        if (clh != null) {
+            int bodyLen = clh.getContentLength() + 100; // TODO Remove Patch for Buggy SIP Servers
+            setRawBody(data, par.getPos(), Math.min(bodyLen, par.length()));
+        } else if (getContentTypeHeader() != null && par.length() > 0) {
+            setRawBody(data, par.getPos(), par.length());
+        }
+    }
+
+    private void setRawBody(byte[] data, int offset, int len) {
+        rawBody = data;
+        rawBodyOffset = offset;
+        rawBodyLength = len;
     }
 
     /**
      * Gets string representation of Message
      */
     public String toString() {
-        return message;
+        StringBuilder str = new StringBuilder();
+        if (request_line != null) {
+            str.append(request_line.toString());
+        } else if (status_line != null) {
+            str.append(status_line.toString());
+        }
+        for (Object header : headers) str.append(header.toString());
+        str.append("\r\n");
+        if (hasBody()) {
+            str.append(getBody());
+        }
+        str.append("\r\n");
+        return str.toString();
     }
 
     /**
@@ -207,12 +380,49 @@ public abstract class BaseMessage {
     }
 
     /**
-     * Gets message length
-     *
-     * @return
+     * Gets message length, without building its string representation
      */
     public int getLength() {
-        return message.length();
+        return encodedLength();
+    }
+
+    /**
+     * Gets the number of bytes written by encodeTo
+     */
+    public int encodedLength() {
+        int len = 4;
+        if (request_line != null) {
+            len += request_line.encodedLength();
+        } else if (status_line != null) {
+            len += status_line.encodedLength();
+        }
+        for (int i = 0; i < headers.size(); i++) len += headers.get(i).encodedLength();
+        if (body != null) {
+            len += ByteEncoder.length(body);
+        } else if (rawBody != null) {
+            len += rawBodyLength;
+        }
+        return len;
+    }
+
+    /**
+     * Writes the Message into <i>buffer</i>, starting at its position, with no intermediate Strings.
+     * A BufferOverflowException is thrown if fewer than encodedLength() bytes remain.
+     */
+    public void encodeTo(ByteBuffer buffer) {
+        if (request_line != null) {
+            request_line.encodeTo(buffer);
+        } else if (status_line != null) {
+            status_line.encodeTo(buffer);
+        }
+        for (int i = 0; i < headers.size(); i++) headers.get(i).encodeTo(buffer);
+        ByteEncoder.putCRLF(buffer);
+        if (body != null) {
+            ByteEncoder.put(buffer, body);
+        } else if (rawBody != null) {
+            buffer.put(rawBody, rawBodyOffset, rawBodyLength);
+        }
+        ByteEncoder.putCRLF(buffer);
     }
 
     /**
@@ -246,46 +456,30 @@ public abstract class BaseMessage {
 
     /**
      * Whether Message is a Request
-     *
-     * @return
-     * @throws NullPointerException
      */
-    public boolean isRequest() throws NullPointerException {  // Req-Line = Method ' ' SIP-URL ' ' "SIP/2.0" CRLF
-        if (message == null || isResponse()) {
-            return false;
-        }
-        String firstline = (new SipParser(message)).getLine();
-        String version = (new SipParser(firstline)).skipString().skipString().getString();
-        if (version == null || version.length() < 4) {
-            return false;
-        }
-        version = version.substring(0, 4);
-        String target = "SIP/";
-        //if (version.compareToIgnoreCase(target)==0) return true;
-        return version.equalsIgnoreCase(target);
+    public boolean isRequest() {
+        return request_line != null;
     }
 
     /**
-     * Gets the MethodIdentifier
-     *
-     * @return
+     * Whether Message is a <i>method</i> request
      */
-    public MethodIdentifier getMethodId() {
-        String method = getCSeqHeader().getMethod();
-        return new MethodIdentifier(method);
+    public boolean isRequest(String method) {
+        return request_line != null && request_line.getMethod().equalsIgnoreCase(method);
     }
 
 
     /**
-     * Whether Message is a <i>method</i> request
+     * Gets the MethodIdentifier
      *
-     * @param method
      * @return
      */
-    public boolean isRequest(String method) {  //if (message==null) return false;
-        return message.startsWith(method);
+    public MethodIdentifier getMethodId() {
+        String method = getCSeqHeader().getMethod();
+        return new MethodIdentifier(method);
     }
 
+
     /**
      * Whether Message is a Method that creates a dialog
      *
@@ -388,120 +582,71 @@ public abstract class BaseMessage {
 
     /**
      * Whether Message has Request-line
-     *
-     * @return
      */
     protected boolean hasRequestLine() {
-        return isRequest();
+        return request_line != null;
     }
 
     /**
      * Gets RequestLine in Message (Returns null if called for no request message)
-     *
-     * @return
      */
     public RequestLine getRequestLine() {
-        if (!isRequest()) {  //printWarning("getRequestLine(): called for no request message\n",1);
-            return null;
-        }
-        SipParser par = new SipParser(message);
-        String method = par.getString();
-        par.skipWSP();
-        par = new SipParser(par.subParser(par.indexOfEOH() - par.getPos()));
-        return new RequestLine(method, par.getSipURL());
+        return request_line;
     }
 
     /**
      * Sets RequestLine of the Message
-     *
-     * @param rl
      */
     public void setRequestLine(RequestLine rl) {
-        if (hasRequestLine()) {
-            removeRequestLine();
-        }
-        String value = rl.toString();
-        message = value + message;
+        request_line = rl;
     }
 
     /**
      * Removes RequestLine of the Message
      */
     public void removeRequestLine() {
-        if (!isRequest()) {
-            return;
-        }
-        removeFirstLine();
+        request_line = null;
     }
 
+
     //**************************** Responses ****************************/
 
     /**
      * Whether Message is a Response
-     *
-     * @return
-     * @throws NullPointerException
      */
-    public boolean isResponse() throws NullPointerException {  // Status-Line = "SIP/2.0" ' ' Status-Code ' 'Reason-Phrase" CRLF
-        //if (message==null) return false;
-        if (message == null || message.length() < 4) {
-            return false;
-        }
-        String version = message.substring(0, 4);
-        //if (version.compareToIgnoreCase(target)==0) return true;
-        return version.equalsIgnoreCase(SIP_RESPONSEPRE);
-
+    public boolean isResponse() throws NullPointerException {
+        return status_line != null;
     }
 
     /**
      * Whether Message has Status-line
-     *
-     * @return
      */
     protected boolean hasStatusLine() {
-        return isResponse();
+        return status_line != null;
     }
 
     /**
      * Gets StautsLine in Message (Returns null if called for no response message)
-     *
-     * @return
      */
     public StatusLine getStatusLine() {
-        if (!isResponse()) {  //printWarning("getStatusLine(): called for no response message\n",1);
-            return null;
-        }
-        SipParser par = new SipParser(message);
-        par.skipString().skipWSP(); // "SIP/2.0 "
-        int code = par.getInt();
-        int begin = par.getPos();
-        int end = par.indexOfEOH();
-        String reason = message.substring(begin, end).trim();
-        return new StatusLine(code, reason);
+        return status_line;
     }
 
     /**
      * Sets StatusLine of the Message
-     *
-     * @param sl
      */
     public void setStatusLine(StatusLine sl) {
-        if (hasStatusLine()) {
-            removeStatusLine();
-        }
-        message = sl.toString() + message;
+        status_line = sl;
     }
 
     /**
      * Removes StatusLine of the Message
      */
     public void removeStatusLine() {
-        if (!isResponse()) {
-            return;
-        }
-        removeFirstLine();
+        status_line = null;
     }
 
+
     //**************************** Generic Headers ****************************/
 
     /**
@@ -528,327 +673,380 @@ public abstract class BaseMessage {
         return null;
     }
 
-    /** Sets Request/Status Line of the Message */
-    /*private void setFirstLine(String value)
-   {  message=value+" \r\n"+message;
-   } */
-
     /**
      * Removes Request\Status Line of the Message
      */
     protected void removeFirstLine() {
-        message = message.substring((new SipParser(message)).indexOfNextHeader());
+        removeRequestLine();
+        removeStatusLine();
     }
 
     /**
-     * Whether Message has any headers of specified name
+     * Gets the List of Headers sharing the canonical name of <i>hname</i>, or null.
      *
-     * @param name
+     * @param hname
      * @return
      */
-    public boolean hasHeader(String name) {
-        Header hd = getHeader(name);
-        return hd != null;
+    private List<Header> indexed(String hname) {
+        return headerIndex.get(SipHeaders.getCanonicalName(hname));
     }
 
     /**
-     * Gets the first Header of specified name (Returns null if no Header is found)
-     *
-     * @param hname
-     * @return
+     * Gets the position of the Header instance <i>h</i> within the Message.
      */
-    public Header getHeader(String hname) {
-        SipParser par = new SipParser(message);
-        return par.getHeader(hname);
+    private int positionOf(Header h) {
+        for (int i = 0; i < headers.size(); i++) {
+            if (headers.get(i) == h) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     /**
-     * Gets a List of all Headers of specified name (Returns empty List if no Header is found)
-     *
-     * @param hname
-     * @return
+     * Inserts Header <i>h</i> at position <i>i</i>, keeping the index in Message order.
      */
-    public List getHeaders(String hname) {
-        List v = new ArrayList();
-        SipParser par = new SipParser(message);
-        Header h;
-        while ((h = par.getHeader(hname)) != null) {
-            v.add(h);
+    private void insertHeader(int i, Header h) {
+        ensureOwnHeaders();
+        String key = SipHeaders.getCanonicalName(h.getName());
+        typedHeaders.remove(key);
+        List<Header> same = headerIndex.get(key);
+        if (same == null) {
+            same = new ArrayList<Header>(2);
+            headerIndex.put(key, same);
+        }
+        if (i >= headers.size()) {
+            headers.add(h);
+            same.add(h);
+            return;
         }
-        return v;
+        int before = 0;
+        if (i > 0) {
+            for (Header other : same) {
+                int pos = positionOf(other);
+                if (pos >= 0 && pos < i) {
+                    before++;
+                }
+            }
+        }
+        headers.add(i, h);
+        same.add(before, h);
     }
 
     /**
-     * Adds Header at the top/bottom.
-     * The bottom is considered before the Content-Length and Content-Type headers
-     *
-     * @param header
-     * @param top
+     * Removes the Header at position <i>i</i>, keeping the index up to date.
      */
-    public void addHeader(Header header, boolean top) {
-        addHeaders(header.toString(), top);
+    private void removeHeaderAt(int i) {
+        ensureOwnHeaders();
+        Header h = headers.remove(i);
+        typedHeaders.remove(SipHeaders.getCanonicalName(h.getName()));
+        List<Header> same = indexed(h.getName());
+        if (same != null) {
+            for (int k = 0; k < same.size(); k++) {
+                if (same.get(k) == h) {
+                    same.remove(k);
+                    break;
+                }
+            }
+            if (same.isEmpty()) {
+                headerIndex.remove(SipHeaders.getCanonicalName(h.getName()));
+            }
+        }
     }
 
     /**
-     * Adds a List of Headers at the top/bottom
+     * Gets the position of header <i>hname</i>.
      *
-     * @param headers
-     * @param top
+     * @param hname
+     * @return
      */
-    public void addHeaders(List<Header> headers, boolean top) {
-        final StringBuilder str = new StringBuilder();
-        for (Object header : headers) str.append(header.toString());
-        addHeaders(str.toString(), top);
+    protected int indexOfHeader(String hname) {
+        List<Header> same = indexed(hname);
+        return same == null ? -1 : positionOf(same.get(0));
     }
 
     /**
-     * Adds MultipleHeader(s) <i>mheader</i> at the top/bottom
-     *
-     * @param mheader
-     * @param top
+     * Whether Message has any headers of specified name
      */
-    public void addHeaders(MultipleHeader mheader, boolean top) {
-        addHeaders(mheader.toString(), top);
+    public boolean hasHeader(String hname) {
+        return indexed(hname) != null;
     }
 
     /**
-     * Adds a one or more Headers at the top/bottom.
-     * The bottom is considered before the Content-Length and Content-Type headers
-     *
-     * @param str
-     * @param top
+     * Gets the first Header of specified name (Returns null if no Header is found).
+     * Compact and long forms of a header name are equivalent.
      */
-    protected void addHeaders(String str, boolean top) {
-        int i, aux;
-        if (top) {
-            if (this.hasRequestLine() || this.hasStatusLine()) {
-                SipParser par = new SipParser(message);
-                par.goToNextHeader();
-                i = par.getPos();
-            } else {
-                i = 0;
-            }
-        } else {
-            SipParser par = new SipParser(message);
-            // index the end of headers
-            i = par.goToEndOfLastHeader().goToNextLine().getPos();
-            par = new SipParser(message);
-            // if Content_Length is present, jump before
-            aux = par.indexOfHeader(SipHeaders.Content_Length);
-            if (aux < i) {
-                i = aux;
-            }
-            // if Content_Type is present, jump before
-            aux = par.indexOfHeader(SipHeaders.Content_Type);
-            if (aux < i) {
-                i = aux;
-            }
-        }
-        String head = message.substring(0, i);
-        String tail = message.substring(i);
-        String new_message = head.concat(str);
-        new_message = new_message.concat(tail);
-        message = new_message;
+    public Header getHeader(String hname) {
+        List<Header> same = indexed(hname);
+        return same == null ? null : same.get(0);
     }
 
     /**
-     * Adds Headers on position <i>index</i> within the Message
-     *
-     * @param str
-     * @param index
+     * Gets a read-only List of all Headers of specified name (Returns empty List if no Header is found).
+     * Compact and long forms of a header name are equivalent.
      */
-    protected void addHeaders(String str, int index) {
-        if (index > message.length()) {
-            index = message.length();
-        }
-        message = message.substring(0, index) + str + message.substring(index);
+    public List getHeaders(String hname) {
+        List<Header> same = indexed(hname);
+        return same == null ? Collections.EMPTY_LIST : Collections.unmodifiableList(same);
     }
 
     /**
-     * Adds Header before the first header <i>refer_header</i>
-     * . <p>If there is no header of such type, it is added at top
-     *
-     * @param new_header
-     * @param refer_header
+     * Adds Header at the top/bottom.
+     * The bottom is considered before the Content-Length and Content-Type headers
      */
-    public void addHeaderBefore(Header new_header, String refer_header) {
-        addHeadersBefore(new_header.toString(), refer_header);
+    public void addHeader(Header header, boolean top) {
+        insertHeader(top ? 0 : headers.size(), header);
     }
 
     /**
-     * Adds MultipleHeader(s) before the first header <i>refer_header</i>
-     * . <p>If there is no header of such type, they are added at top
-     *
-     * @param mheader
-     * @param refer_header
+     * Adds a List of Headers at the top/bottom
      */
-    public void addHeadersBefore(MultipleHeader mheader, String refer_header) {
-        addHeadersBefore(mheader.toString(), refer_header);
+    public void addHeaders(List<Header> headers, boolean top) {
+        for (int i = 0; i < headers.size(); i++)
+            insertHeader(top ? i : this.headers.size(), headers.get(i));
     }
 
     /**
-     * Adds Headers before the first header <i>refer_header</i>
-     * . <p>If there is no header of such type, they are added at top
-     *
-     * @param str
-     * @param refer_header
+     * Adds MultipleHeader(s) <i>mheader</i> at the top/bottom
      */
-    protected void addHeadersBefore(String str, String refer_header) {
-        if (!hasHeader(refer_header)) {
-            addHeaders(str, true);
+    public void addHeaders(MultipleHeader mheader, boolean top) {
+        if (mheader.isCommaSeparated()) {
+            addHeader(mheader.toHeader(), top);
         } else {
-            SipParser par = new SipParser(message);
-            par.goTo(refer_header);
-            int here = par.getPos();
-            message = message.substring(0, here) + str + message.substring(here);
+            addHeaders(mheader.getHeaders(), top);
         }
     }
 
     /**
-     * Adds Header after the first header <i>refer_header</i>
-     * . <p>If there is no header of such type, it is added at bottom
-     *
-     * @param new_header
-     * @param refer_header
+     * Adds Header before the first header <i>refer_hname</i>
+     * . <p>If there is no header of such type, it is added at top
      */
-    public void addHeaderAfter(Header new_header, String refer_header) {
-        addHeadersAfter(new_header.toString(), refer_header);
+    public void addHeaderBefore(Header new_header, String refer_hname) {
+        int i = indexOfHeader(refer_hname);
+        if (i < 0) {
+            i = 0;
+        }
+        insertHeader(i, new_header);
     }
 
     /**
-     * Adds MultipleHeader(s) after the first header <i>refer_header</i>
-     * . <p>If there is no header of such type, they are added at bottom
-     *
-     * @param mheader
-     * @param refer_header
+     * Adds MultipleHeader(s) before the first header <i>refer_hname</i>
+     * . <p>If there is no header of such type, they are added at top
      */
-    public void addHeadersAfter(MultipleHeader mheader, String refer_header) {
-        addHeadersAfter(mheader.toString(), refer_header);
+    public void addHeadersBefore(MultipleHeader mheader, String refer_hname) {
+        if (mheader.isCommaSeparated()) {
+            addHeaderBefore(mheader.toHeader(), refer_hname);
+        } else {
+            int index = indexOfHeader(refer_hname);
+            if (index < 0) {
+                index = 0;
+            }
+            List<Header> hs = mheader.getHeaders();
+            for (int k = 0; k < hs.size(); k++) insertHeader(index + k, hs.get(k));
+        }
     }
 
     /**
-     * Adds Headers after the first header <i>refer_header</i>
+     * Adds Header after the first header <i>refer_hname</i>
+     * . <p>If there is no header of such type, it is added at bottom
+     */
+    public void addHeaderAfter(Header new_header, String refer_hname) {
+        int i = indexOfHeader(refer_hname);
+        if (i >= 0) {
+            i++;
+        } else {
+            i = headers.size();
+        }
+        insertHeader(i, new_header);
+    }
+
+    /**
+     * Adds MultipleHeader(s) after the first header <i>refer_hname</i>
      * . <p>If there is no header of such type, they are added at bottom
-     *
-     * @param str
-     * @param refer_header
      */
-    protected void addHeadersAfter(String str, String refer_header) {
-        if (!hasHeader(refer_header)) {
-            addHeaders(str, false);
+    public void addHeadersAfter(MultipleHeader mheader, String refer_hname) {
+        if (mheader.isCommaSeparated()) {
+            addHeaderAfter(mheader.toHeader(), refer_hname);
         } else {
-            SipParser par = new SipParser(message);
-            par.goTo(refer_header);
-            int here = par.indexOfNextHeader();
-            message = message.substring(0, here) + str + message.substring(here);
+            int index = indexOfHeader(refer_hname);
+            if (index >= 0) {
+                index++;
+            } else {
+                index = headers.size();
+            }
+            List<Header> hs = mheader.getHeaders();
+            for (int k = 0; k < hs.size(); k++) insertHeader(index + k, hs.get(k));
         }
     }
 
     /**
      * Removes first Header of specified name
-     *
-     * @param hname
      */
     public void removeHeader(String hname) {
         removeHeader(hname, true);
     }
 
     /**
-     * Removes first (or last) Header of specified name
-     *
-     * @param hname
-     * @param first
+     * Removes first (or last) Header of specified name.
      */
     public void removeHeader(String hname, boolean first) {
-        String[] target = {'\n' + hname, '\r' + hname};
-        SipParser par = new SipParser(message);
-        par.goTo(target);
-        if (!par.hasMore()) {
-            return;
+        List<Header> same = indexed(hname);
+        if (same != null) {
+            removeHeaderAt(positionOf(same.get(first ? 0 : same.size() - 1)));
         }
-        if (!first) {
-            while (true) {
-                int next = par.indexOf(target);
-                if (next < 0) {
-                    break;
-                }
-                par.setPos(next);
+    }
+
+    /**
+     * Removes all Headers of specified name
+     */
+    public void removeAllHeaders(String hname) {
+        ensureOwnHeaders();
+        String key = SipHeaders.getCanonicalName(hname);
+        typedHeaders.remove(key);
+        List<Header> same = headerIndex.remove(key);
+        if (same != null) {
+            for (Header h : same) {
+                headers.remove(positionOf(h));
             }
         }
-        par.skipChar();
-        String head = message.substring(0, par.getPos());
-        par.goToNextHeader();
-        String tail = message.substring(par.getPos());
-        message = head.concat(tail);
     }
 
-    /** Sets the new Header (removing any previous headers of the same name) */
-    /*public void setHeader(Header hd)
-    {  if (hasHeader(hd.getName())) removeAllHeaders(hd.getName());
-       addHeader(hd,false);
-    }*/
-
     /**
-     * Sets the Header <i>hd</i> removing any previous headers of the same type
-     *
-     * @param hd
+     * Sets the Header <i>hd</i> removing any previous headers of the same type.
      */
     public void setHeader(Header hd) {
-        if (hd != null) {
-            String hname = hd.getName();
-            if (hasHeader(hname)) {
-                int index = (new SipParser(message)).indexOfHeader(hname);
-                removeAllHeaders(hname);
-                addHeaders(hd.toString(), index);
+        if (hd == null) {
+            log.warn("Invalid Header Received.");
+            return;
+        }
+        List<Header> same = indexed(hd.getName());
+        if (same == null) {
+            insertHeader(headers.size(), hd);
+            return;
+        }
+        int i = positionOf(same.get(0));
+        removeAllHeaders(hd.getName());
+        insertHeader(i, hd);
+    }
+
+    /**
+     * Sets MultipleHeader <i>mheader</i>
+     */
+    public void setHeaders(MultipleHeader mheader) {
+        if (mheader.isCommaSeparated()) {
+            setHeader(mheader.toHeader());
+        } else {
+            List<Header> same = indexed(mheader.getName());
+            if (same != null) {
+                int i = positionOf(same.get(0));
+                removeAllHeaders(mheader.getName());
+                List<Header> hs = mheader.getHeaders();
+                for (int k = 0; k < hs.size(); k++) insertHeader(i + k, hs.get(k));
             } else {
-                addHeader(hd, false);
+                addHeaders(mheader, false);
             }
-        } else {
-            log.warn("Invalid Header Received.");
         }
     }
 
+
+    //***************************** Typed Headers *****************************/
+
     /**
-     * Removes all Headers of specified name
+     * A typed header together with the raw Header and the value it was parsed from.
+     * The typed header is never handed out, callers get copies of it.
+     */
+    private static class TypedHeader {
+        final Header source;
+        final String value;
+        final Header typed;
+
+        TypedHeader(Header source, Header typed) {
+            this.source = source;
+            this.value = source.getValue();
+            this.typed = typed;
+        }
+
+        /**
+         * Whether the raw Header did not get a new value since parsing
+         */
+        boolean isValid(Header h) {
+            return source == h && h.getValue() == value;
+        }
+    }
+
+    /**
+     * Gets the first Header named <i>hname</i> in its typed form. The raw Header is
+     * split and typed only the first time, until a Header of that type is added, set or
+     * removed; every call returns a new typed Header, sharing the parameters parsed in the
+     * cached one until it is changed, so changing it does not change the Message or what
+     * other callers got.
+     * Concurrent reads of a Message are safe, a Message must not be changed while read.
      *
      * @param hname
+     * @return
      */
-    public void removeAllHeaders(String hname) {
-        String[] target = {'\n' + hname, '\r' + hname};
-        SipParser par = new SipParser(message);
-        par.goTo(target);
-        while (par.hasMore()) {
-            par.skipChar();
-            String head = message.substring(0, par.getPos());
-            String tail = message.substring(par.indexOfNextHeader());
-            message = head.concat(tail);
-            par = new SipParser(message, par.getPos() - 1);
-            par.goTo(target);
+    protected Header getTypedHeader(String hname) {
+        String key = SipHeaders.getCanonicalName(hname);
+        List<Header> same = headerIndex.get(key);
+        if (same == null) {
+            return null;
         }
+        Header h = same.get(0);
+        TypedHeader th = typedHeaders.get(key);
+        if (th == null || !th.isValid(h)) {
+            th = new TypedHeader(h, createTypedHeader(key, h));
+            typedHeaders.put(key, th);
+        }
+        return copyTypedHeader(key, th.typed);
     }
 
-    /** Sets MultipleHeader <i>mheader</i> */
-    /*public void setHeaders(MultipleHeader mheader)
-    {  if (hasHeader(mheader.getName())) removeAllHeaders(mheader.getName());
-       addHeaders(mheader,false);
-    }*/
+    /**
+     * Creates the typed form of Header <i>h</i>, whose canonical name is <i>key</i>.
+     *
+     * @param key
+     * @param h
+     * @return
+     */
+    private static Header createTypedHeader(String key, Header h) {
+        if (key.equals(SipHeaders.Via) || key.equals(SipHeaders.Contact)) {
+            return copyTypedHeader(key, new MultipleHeader(h).getTop());
+        }
+        return copyTypedHeader(key, h);
+    }
 
     /**
-     * Sets MultipleHeader <i>mheader</i>
+     * Creates a typed Header, whose canonical name is <i>key</i>, with the value of <i>h</i>.
      *
-     * @param mheader
+     * @param key
+     * @param h
+     * @return
      */
-    public void setHeaders(MultipleHeader mheader) {
-        String hname = mheader.getName();
-        if (hasHeader(hname)) {
-            int index = (new SipParser(message)).indexOfHeader(hname);
-            removeAllHeaders(hname);
-            addHeaders(mheader.toString(), index);
-        } else {
-            addHeaders(mheader, false);
+    private static Header copyTypedHeader(String key, Header h) {
+        if (key.equals(SipHeaders.From)) {
+            return new FromHeader(h);
+        } else if (key.equals(SipHeaders.To)) {
+            return new ToHeader(h);
+        } else if (key.equals(SipHeaders.Via)) {
+            return new ViaHeader(h);
+        } else if (key.equals(SipHeaders.Contact)) {
+            return new ContactHeader(h);
+        } else if (key.equals(SipHeaders.CSeq)) {
+            return new CSeqHeader(h);
+        } else if (key.equals(SipHeaders.CallID)) {
+            return new CallIdHeader(h);
+        } else if (key.equals(SipHeaders.Max_Forwards)) {
+            return new MaxForwardsHeader(h);
+        } else if (key.equals(SipHeaders.Expires)) {
+            return new ExpiresHeader(h);
+        } else if (key.equals(SipHeaders.Content_Type)) {
+            return new ContentTypeHeader(h);
+        } else if (key.equals(SipHeaders.Content_Length)) {
+            return new ContentLengthHeader(h);
         }
+        return new Header(h);
     }
 
+
     //**************************** Specific Headers ****************************/
 
     /**
@@ -866,12 +1064,7 @@ public abstract class BaseMessage {
      * @return
      */
     public MaxForwardsHeader getMaxForwardsHeader() {
-        Header h = getHeader(SipHeaders.Max_Forwards);
-        if (h == null) {
-            return null;
-        } else {
-            return new MaxForwardsHeader(h);
-        }
+        return (MaxForwardsHeader) getTypedHeader(SipHeaders.Max_Forwards);
     }
 
     /**
@@ -897,7 +1090,7 @@ public abstract class BaseMessage {
      * @return
      */
     public boolean hasFromHeader() {
-        return hasHeader(SipHeaders.From) || hasHeader(SipHeaders.From_short);
+        return hasHeader(SipHeaders.From);
     }
 
     /**
@@ -906,16 +1099,7 @@ public abstract class BaseMessage {
      * @return
      */
     public FromHeader getFromHeader() {
-        Header h = getHeader(SipHeaders.From);
-        if (h == null) {
-            h = getHeader(SipHeaders.From_short);
-        }
-
-        if (h == null) {
-            return null;
-        } else {
-            return new FromHeader(h);
-        }
+        return (FromHeader) getTypedHeader(SipHeaders.From);
     }
 
     /**
@@ -932,7 +1116,6 @@ public abstract class BaseMessage {
      */
     public void removeFromHeader() {
         removeHeader(SipHeaders.From);
-        removeHeader(SipHeaders.From_short);
     }
 
     /**
@@ -941,7 +1124,7 @@ public abstract class BaseMessage {
      * @return
      */
     public boolean hasToHeader() {
-        return hasHeader(SipHeaders.To) || hasHeader(SipHeaders.To_short);
+        return hasHeader(SipHeaders.To);
     }
 
     /**
@@ -950,15 +1133,7 @@ public abstract class BaseMessage {
      * @return
      */
     public ToHeader getToHeader() {
-        Header h = getHeader(SipHeaders.To);
-        if (h == null) {
-            h = getHeader(SipHeaders.To_short);
-        }
-        if (h == null) {
-            return null;
-        } else {
-            return new ToHeader(h);
-        }
+        return (ToHeader) getTypedHeader(SipHeaders.To);
     }
 
     /**
@@ -975,7 +1150,6 @@ public abstract class BaseMessage {
      */
     public void removeToHeader() {
         removeHeader(SipHeaders.To);
-        removeHeader(SipHeaders.To_short);
     }
 
 
@@ -985,7 +1159,7 @@ public abstract class BaseMessage {
      * @return
      */
     public boolean hasContactHeader() {
-        return hasHeader(SipHeaders.Contact) || hasHeader(SipHeaders.Contact_short);
+        return hasHeader(SipHeaders.Contact);
     }
 
     /**
@@ -993,13 +1167,8 @@ public abstract class BaseMessage {
      *
      * @return
      */
-    public ContactHeader getContactHeader() {  //Header h=getHeader(SipHeaders.Contact);
-        //if (h==null) return null; else return new ContactHeader(h);
-        MultipleHeader mh = getContacts();
-        if (mh == null) {
-            return null;
-        }
-        return new ContactHeader(mh.getTop());
+    public ContactHeader getContactHeader() {
+        return (ContactHeader) getTypedHeader(SipHeaders.Contact);
     }
 
     /**
@@ -1031,9 +1200,6 @@ public abstract class BaseMessage {
      */
     public MultipleHeader getContacts() {
         List v = getHeaders(SipHeaders.Contact);
-        if (v.size() == 0) {
-            v = getHeaders(SipHeaders.Contact_short);
-        }
         if (v.size() > 0) {
             return new MultipleHeader(v);
         } else {
@@ -1068,7 +1234,6 @@ public abstract class BaseMessage {
      */
     public void removeContacts() {
         removeAllHeaders(SipHeaders.Contact);
-        removeAllHeaders(SipHeaders.Contact_short);
     }
 
 
@@ -1078,7 +1243,7 @@ public abstract class BaseMessage {
      * @return
      */
     public boolean hasViaHeader() {
-        return hasHeader(SipHeaders.Via) || hasHeader(SipHeaders.Via_short);
+        return hasHeader(SipHeaders.Via);
     }
 
     /**
@@ -1095,13 +1260,8 @@ public abstract class BaseMessage {
      *
      * @return
      */
-    public ViaHeader getViaHeader() {  //Header h=getHeader(SipHeaders.Via);
-        //if (h==null) return null; else return new ViaHeader(h);
-        MultipleHeader mh = getVias();
-        if (mh == null) {
-            return null;
-        }
-        return new ViaHeader(mh.getTop());
+    public ViaHeader getViaHeader() {
+        return (ViaHeader) getTypedHeader(SipHeaders.Via);
     }
 
     /**
@@ -1120,11 +1280,6 @@ public abstract class BaseMessage {
      */
     public MultipleHeader getVias() {
         List v = getHeaders(SipHeaders.Via);
-
-        if (v.size() == 0) {
-            v = getHeaders(SipHeaders.Via_short);
-        }
-
         if (v.size() > 0) {
             return new MultipleHeader(v);
         } else {
@@ -1159,7 +1314,6 @@ public abstract class BaseMessage {
      */
     public void removeVias() {
         removeAllHeaders(SipHeaders.Via);
-        removeAllHeaders(SipHeaders.Via_short);
     }
 
 
@@ -1346,12 +1500,7 @@ public abstract class BaseMessage {
      * @return
      */
     public CSeqHeader getCSeqHeader() {
-        Header h = getHeader(SipHeaders.CSeq);
-        if (h == null) {
-            return null;
-        } else {
-            return new CSeqHeader(h);
-        }
+        return (CSeqHeader) getTypedHeader(SipHeaders.CSeq);
     }
 
     /**
@@ -1381,7 +1530,7 @@ public abstract class BaseMessage {
      * @return
      */
     public boolean hasCallIdHeader() {
-        return hasHeader(SipHeaders.CallID) || hasHeader(SipHeaders.CallID_short);
+        return hasHeader(SipHeaders.CallID);
     }
 
     /**
@@ -1403,15 +1552,7 @@ public abstract class BaseMessage {
      * @return
      */
     public CallIdHeader getCallIdHeader() {
-        Header h = getHeader(SipHeaders.CallID);
-        if (h == null) {
-            h = getHeader(SipHeaders.CallID_short);
-        }
-        if (h == null) {
-            return null;
-        } else {
-            return new CallIdHeader(h);
-        }
+        return (CallIdHeader) getTypedHeader(SipHeaders.CallID);
     }
 
     /**
@@ -1419,7 +1560,6 @@ public abstract class BaseMessage {
      */
     public void removeCallIdHeader() {
         removeHeader(SipHeaders.CallID);
-        removeHeader(SipHeaders.CallID_short);
     }
 
 
@@ -1718,12 +1858,7 @@ public abstract class BaseMessage {
      * @return
      */
     public ExpiresHeader getExpiresHeader() {
-        Header h = getHeader(SipHeaders.Expires);
-        if (h == null) {
-            return null;
-        } else {
-            return new ExpiresHeader(h);
-        }
+        return (ExpiresHeader) getTypedHeader(SipHeaders.Expires);
     }
 
     /**
@@ -1749,7 +1884,7 @@ public abstract class BaseMessage {
      * @return
      */
     public boolean hasContentTypeHeader() {
-        return hasHeader(SipHeaders.Content_Type) || hasHeader(SipHeaders.Content_Type_short);
+        return hasHeader(SipHeaders.Content_Type);
     }
 
     /**
@@ -1758,17 +1893,7 @@ public abstract class BaseMessage {
      * @return
      */
     public ContentTypeHeader getContentTypeHeader() {
-        Header h = getHeader(SipHeaders.Content_Type);
-
-        if (h == null) {
-            h = getHeader(SipHeaders.Content_Type_short);
-        }
-
-        if (h == null) {
-            return null;
-        } else {
-            return new ContentTypeHeader(h);
-        }
+        return (ContentTypeHeader) getTypedHeader(SipHeaders.Content_Type);
     }
 
     /**
@@ -1785,7 +1910,6 @@ public abstract class BaseMessage {
      */
     protected void removeContentTypeHeader() {
         removeHeader(SipHeaders.Content_Type);
-        removeHeader(SipHeaders.Content_Type_short);
     }
 
 
@@ -1795,7 +1919,7 @@ public abstract class BaseMessage {
      * @return
      */
     public boolean hasContentLengthHeader() {
-        return hasHeader(SipHeaders.Content_Length) || hasHeader(SipHeaders.Content_Length_short);
+        return hasHeader(SipHeaders.Content_Length);
     }
 
     /**
@@ -1804,15 +1928,7 @@ public abstract class BaseMessage {
      * @return
      */
     public ContentLengthHeader getContentLengthHeader() {
-        Header h = getHeader(SipHeaders.Content_Length);
-        if (h == null) {
-            h = getHeader(SipHeaders.Content_Length_short);
-        }
-        if (h == null) {
-            return null;
-        } else {
-            return new ContentLengthHeader(h);
-        }
+        return (ContentLengthHeader) getTypedHeader(SipHeaders.Content_Length);
     }
 
     /**
@@ -1829,27 +1945,18 @@ public abstract class BaseMessage {
      */
     protected void removeContentLengthHeader() {
         removeHeader(SipHeaders.Content_Length);
-        removeHeader(SipHeaders.Content_Length_short);
     }
 
 
     /**
      * Whether Message has Body
-     *
-     * @return
      */
     public boolean hasBody() {
-        if (hasContentLengthHeader()) {
-            return getContentLengthHeader().getContentLength() > 0;
-        } else {
-            return hasContentTypeHeader();
-        }
+        return this.body != null || this.rawBody != null;
     }
 
     /**
      * Gets body(content) type
-     *
-     * @return
      */
     public String getBodyType() {
         return getContentTypeHeader().getContentType();
@@ -1857,20 +1964,19 @@ public abstract class BaseMessage {
 
     /**
      * Sets the message body
-     *
-     * @param content_type
-     * @param body
      */
     public void setBody(String content_type, String body) {
         removeBody();
         if (body != null && body.length() > 0) {
+            body = body.trim();
             setContentTypeHeader(new ContentTypeHeader(content_type));
             setContentLengthHeader(new ContentLengthHeader(body.length()));
-            message = message + "\r\n" + body;
+            this.body = body;
         } else {
             setContentLengthHeader(new ContentLengthHeader(0));
-            message = message;
+            this.body = null;
         }
+        this.rawBody = null;
     }
 
     /**
@@ -1886,37 +1992,28 @@ public abstract class BaseMessage {
      * Gets message body. The end of body is evaluated
      * from the Content-Length header if present (SIP-RFC compliant),
      * or from the end of message if no Content-Length header is present (non-SIP-RFC compliant)
-     *
-     * @return
      */
-    public String getBody() {  //if (!hasBody()) return "";
-        if (!hasBody()) {
-            return null;
-        }
-        int begin = (new SipParser(message)).goToBody().getPos();
-        int len;
-        // the following 'if' is for robustness with non SIP-compliant UAs;
-        // copliant UAs must insert Content-Length header when body is present..
-        if (this.hasContentLengthHeader()) {
-            len = getContentLengthHeader().getContentLength();
-        } else {  //printWarning("No Content-Length header found for the Body",3);
-            len = message.length() - begin;
-        }
-        int end = begin + len;
-        if (end > message.length()) {  //printWarning("Found a Message Body shorter than Content-Length",3);
-            end = message.length();
+    public String getBody() {
+        String decoded = body;
+        if (decoded == null) {
+            // rawBody is kept, so that concurrent readers decode the same bytes
+            byte[] raw = rawBody;
+            if (raw != null) {
+                decoded = new String(raw, rawBodyOffset, rawBodyLength);
+                body = decoded;
+            }
         }
-        return message.substring(begin, end);
+        return decoded;
     }
 
     /**
      * Removes the message body (if it exists) and the final empty line
      */
     public void removeBody() {
-        int pos = (new SipParser(message)).goToEndOfLastHeader().goToNextLine().getPos();
-        message = message.substring(0, pos);
         removeContentLengthHeader();
         removeContentTypeHeader();
+        this.body = null;
+        this.rawBody = null;
     }
 
     //**************************** Authentication ****************************/
@@ -39,6 +39,8 @@ import org.zoolu.sip.provider.SipStack;
  * BaseMessageFactory is used to create SIP messages, requests and
  * responses by means of
  * two static methods: createRequest(), createResponse().
+ * <BR> Stateless responses sent at high rates (100 Trying, 200 OK to OPTIONS,
+ * 401 challenges) can be written from pre-encoded ResponseTemplates instead.
  * <BR> A valid SIP request sent by a UAC MUST, at least, contain
  * the following header fields: To, From, CSeq, Call-ID, Max-Forwards,
  * and Via; all of these header fields are mandatory in all SIP
@@ -653,4 +655,91 @@ public abstract class BaseMessageFactory {
         return createResponse(req, code, reason, localtag, contact, null, null);
     }
 
+
+    //**************************** Response Templates ****************************/
+
+    private static ResponseTemplate tryingTemplate;
+    private static ResponseTemplate optionsTemplate;
+    private static ResponseTemplate unauthorizedTemplate;
+    private static String templateServerInfo;
+
+    /**
+     * Creates a ResponseTemplate with the given constant headers, plus the 'Server'
+     * header field if SipStack.serverInfo is set.
+     *
+     * @param code
+     * @param reason
+     * @param constants
+     * @return
+     */
+    public static ResponseTemplate createResponseTemplate(int code, String reason, Header... constants) {
+        if (SipStack.serverInfo != null) {
+            Header[] hs = new Header[constants.length + 1];
+            hs[0] = new ServerHeader(SipStack.serverInfo);
+            System.arraycopy(constants, 0, hs, 1, constants.length);
+            constants = hs;
+        }
+        return new ResponseTemplate(code, reason, constants);
+    }
+
+    /**
+     * Gets the shared template of 100 Trying responses.
+     *
+     * @return
+     */
+    public static synchronized ResponseTemplate getTryingTemplate() {
+        checkTemplates();
+        if (tryingTemplate == null) {
+            tryingTemplate = createResponseTemplate(100, SipResponses.reasonOf(100));
+        }
+        return tryingTemplate;
+    }
+
+    /**
+     * Gets the shared template of 200 OK responses to OPTIONS requests,
+     * with the 'Allow' and 'Accept' header fields.
+     *
+     * @return
+     */
+    public static synchronized ResponseTemplate getOptionsTemplate() {
+        checkTemplates();
+        if (optionsTemplate == null) {
+            StringBuilder allow = new StringBuilder();
+            for (int i = 0; i < SipMethods.methods.length; i++) {
+                if (i > 0) {
+                    allow.append(", ");
+                }
+                allow.append(SipMethods.methods[i]);
+            }
+            optionsTemplate = createResponseTemplate(200, SipResponses.reasonOf(200), new AllowHeader(allow.toString()), new AcceptHeader());
+        }
+        return optionsTemplate;
+    }
+
+    /**
+     * Gets the shared template of 401 Unauthorized responses.
+     * The 'WWW-Authenticate' header field carries a fresh nonce, so it has to be passed
+     * as an extra header to ResponseTemplate.encodeTo().
+     *
+     * @return
+     */
+    public static synchronized ResponseTemplate getUnauthorizedTemplate() {
+        checkTemplates();
+        if (unauthorizedTemplate == null) {
+            unauthorizedTemplate = createResponseTemplate(401, SipResponses.reasonOf(401));
+        }
+        return unauthorizedTemplate;
+    }
+
+    /**
+     * Drops the shared templates if SipStack.serverInfo changed since they were encoded.
+     */
+    private static void checkTemplates() {
+        String serverInfo = SipStack.serverInfo;
+        if (serverInfo == null ? templateServerInfo != null : !serverInfo.equals(templateServerInfo)) {
+            tryingTemplate = optionsTemplate = unauthorizedTemplate = null;
+            templateServerInfo = serverInfo;
+        }
+    }
+
 }  
\ No newline at end of file
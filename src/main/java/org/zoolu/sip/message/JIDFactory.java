@@ -27,22 +27,53 @@
 
 package org.zoolu.sip.message;
 
-
 import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.googlecode.concurrentlinkedhashmap.EntryWeigher;
+import com.googlecode.concurrentlinkedhashmap.EvictionListener;
+import org.zoolu.sip.provider.SipStack;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Thread-safe cache of JIDs, keyed by the string they were prepared from.
+ * <p/> The cache is bounded by the total length of its keys and values (see SipStack.jid_cache_capacity)
+ * and evicts the least recently used entries. Prep filters form an immutable chain: adding a filter
+ * replaces the chain and clears the cache, so a cached JID always went through the current filters.
+ */
 public class JIDFactory {
 
-    private final ConcurrentLinkedHashMap<String, String> jidCache = new ConcurrentLinkedHashMap.Builder<String, String>()
-            .maximumWeightedCapacity(4000)
-            .build();
+    private static final JIDFormatter[] NO_FILTERS = new JIDFormatter[0];
 
-    private static JIDFactory jidFactory;
-    private final List<JIDFormatter> jidPrepFilters = new ArrayList<JIDFormatter>();
+    private final ConcurrentLinkedHashMap<String, String> jidCache;
+    private volatile JIDFormatter[] jidPrepFilters = NO_FILTERS;
 
-    private JIDFactory() {
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+
+    private static class Holder {
+        static final JIDFactory instance = new JIDFactory(SipStack.jid_cache_capacity);
+    }
+
+    /**
+     * Costructs a new JIDFactory
+     *
+     * @param capacity the maximum total length, in chars, of the cached strings and JIDs
+     */
+    public JIDFactory(final long capacity) {
+        jidCache = new ConcurrentLinkedHashMap.Builder<String, String>()
+                .maximumWeightedCapacity(capacity)
+                .weigher(new EntryWeigher<String, String>() {
+                    public int weightOf(final String key, final String value) {
+                        return Math.max(1, key == value ? key.length() : key.length() + value.length());
+                    }
+                })
+                .listener(new EvictionListener<String, String>() {
+                    public void onEviction(final String key, final String value) {
+                        evictions.incrementAndGet();
+                    }
+                })
+                .build();
     }
 
     /*only for testing purposes
@@ -52,28 +83,46 @@ public class JIDFactory {
     }
 
     public static JIDFactory getInstance() {
-        if (jidFactory == null) {
-            jidFactory = new JIDFactory();
-        }
-        return jidFactory;
+        return Holder.instance;
     }
 
-    public String getJID(String str) throws IllegalArgumentException {
-        if (jidCache.containsKey(str)) {
-            return jidCache.get(str);
+    public String getJID(final String str) throws IllegalArgumentException {
+        final String cached = jidCache.get(str);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
         }
+        misses.incrementAndGet();
 
-        for (final JIDFormatter filter : jidPrepFilters) {
-            str = filter.prepForJID(str);
+        final JIDFormatter[] filters = jidPrepFilters;
+        String jid = str;
+        for (final JIDFormatter filter : filters) {
+            jid = filter.prepForJID(jid);
         }
 
-        final String jidEntry = new String(str);
-        jidCache.put(str, jidEntry);
-        return jidEntry;
+        // another thread may have prepared the same JID meanwhile
+        final String raced = jidCache.putIfAbsent(str, jid);
+        if (raced != null) {
+            return raced;
+        }
+        if (filters != jidPrepFilters) {
+            // the chain changed while preparing, don't keep a stale JID
+            jidCache.remove(str, jid);
+        }
+        return jid;
     }
 
-    public void addJIDPrepFilter(final JIDFormatter filter) {
-        jidPrepFilters.add(filter);
+    /**
+     * Appends a filter to the prep chain. Cached JIDs are dropped, as they did not go through it.
+     *
+     * @param filter
+     */
+    public synchronized void addJIDPrepFilter(final JIDFormatter filter) {
+        final JIDFormatter[] filters = new JIDFormatter[jidPrepFilters.length + 1];
+        System.arraycopy(jidPrepFilters, 0, filters, 0, jidPrepFilters.length);
+        filters[jidPrepFilters.length] = filter;
+        jidPrepFilters = filters;
+        jidCache.clear();
     }
 
     public String getJID(final String node, final String domain, final String resource) throws IllegalArgumentException {
@@ -102,4 +151,36 @@ public class JIDFactory {
     public void reset() {
         jidCache.clear();
     }
+
+    /**
+     * @return number of getJID calls answered from the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of getJID calls that had to run the prep filters
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of entries evicted to stay within capacity
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return total length, in chars, of the cached strings and JIDs
+     */
+    public long getWeightedSize() {
+        return jidCache.weightedSize();
+    }
+
+    public long getCapacity() {
+        return jidCache.capacity();
+    }
 }
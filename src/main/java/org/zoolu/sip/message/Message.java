@@ -28,9 +28,11 @@
 package org.zoolu.sip.message;
 
 import org.zoolu.sip.header.*;
+import org.zoolu.sip.provider.SipStack;
 
 import java.net.DatagramPacket;
 import java.net.SocketAddress;
+import java.nio.ByteBuffer;
 
 
 /**
@@ -49,7 +51,7 @@ public class Message extends BaseMessageOtp {
 
     private SocketAddress sendTo;
     private SipChannel arrivedAt;
-    private Participants participants;
+    private volatile Participants participants;
 
     public SocketAddress getSendTo() {
         return sendTo;
@@ -73,12 +75,8 @@ public class Message extends BaseMessageOtp {
      */
     public Message(String str) {
         super(str);
-        try {
-            if (str != null && str.length() > 10) {
-                participants = Participants.getParticipants(this);
-            }
-        } catch (SipParsingException e) {
-            log.warn("Error Getting Participants.", e);
+        if (str != null && str.length() > 10) {
+            initParticipants();
         }
     }
 
@@ -91,13 +89,7 @@ public class Message extends BaseMessageOtp {
      */
     public Message(byte[] buff, int offset, int len) {
         super(buff, offset, len);
-
-        try {
-            participants = Participants.getParticipants(this);
-        } catch (SipParsingException e) {
-            log.warn("Error Getting Participants.", e);
-        }
-
+        initParticipants();
     }
 
     /**
@@ -108,33 +100,35 @@ public class Message extends BaseMessageOtp {
     public Message(DatagramPacket packet) {
         super(packet);
         setSendTo(packet.getSocketAddress());
-        try {
-            participants = Participants.getParticipants(this);
-        } catch (SipParsingException e) {
-            log.warn("Error Getting Participants.", e);
-        }
-
+        initParticipants();
+    }
 
+    /**
+     * Costructs a new Message from the bytes between position and limit of <i>buffer</i>,
+     * e.g. a buffer received by a DatagramListener once flipped.
+     * Headers are decoded only when requested.
+     *
+     * @param buffer
+     */
+    public Message(ByteBuffer buffer) {
+        super(buffer);
+        initParticipants();
     }
 
     /**
-     * Costructs a new Message
+     * Costructs a new Message sharing headers and body with <i>msg</i> until either changes them.
+     * Participants are carried over, not computed again.
      *
      * @param msg
      */
     public Message(Message msg) {
         super(msg);
-        try {
-            participants = Participants.getParticipants(this);
-        } catch (SipParsingException e) {
-            log.error("Error Getting Participants.", e);
-        }
-
-
+        participants = msg.participants;
     }
 
     /**
-     * Creates and returns a clone of the Message
+     * Creates and returns a clone of the Message. The clone is copy-on-write, so cloning
+     * for each target of a fork or relay is cheap.
      */
     public Object clone() {
         return new Message(this);
@@ -395,10 +389,32 @@ public class Message extends BaseMessageOtp {
         this.arrivedAt = arrivedAt;
     }
 
+    /**
+     * Computes the Participants right away if SipStack.eager_participants is set;
+     * otherwise they are computed on first call to getParticipants().
+     */
+    private void initParticipants() {
+        if (SipStack.eager_participants) {
+            try {
+                participants = Participants.getParticipants(this);
+            } catch (SipParsingException e) {
+                log.warn("Error Getting Participants.", e);
+            }
+        }
+    }
+
+    /**
+     * Gets the Participants of the Message, computing them from From/To on first call.
+     *
+     * @return
+     * @throws SipParsingException if From/To are missing or invalid
+     */
     public Participants getParticipants() throws SipParsingException {
-        if (participants == null) {
-            participants = Participants.getParticipants(this);
+        Participants p = participants;
+        if (p == null) {
+            p = Participants.getParticipants(this);
+            participants = p;
         }
-        return participants;
+        return p;
     }
 }
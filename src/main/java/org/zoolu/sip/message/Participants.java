@@ -33,10 +33,13 @@ import org.zoolu.sip.address.SipURL;
 import org.zoolu.sip.header.FromHeader;
 import org.zoolu.sip.header.ToHeader;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 
 public class Participants {
 
     final private static Logger log = Logger.getLogger(Participants.class);
+    final private static AtomicLong computations = new AtomicLong(0);
     private final String initiator;
     private final String responder;
 
@@ -53,8 +56,18 @@ public class Participants {
         return responder;
     }
 
+    /**
+     * Gets how many times Participants were computed from a Message, i.e. how often JIDs were actually needed.
+     *
+     * @return
+     */
+    public static long getComputationCount() {
+        return computations.get();
+    }
+
     public static Participants getParticipants(final Message msg) throws SipParsingException {
 
+        computations.incrementAndGet();
         try {
 
             final FromHeader fHeader = msg.getFromHeader();
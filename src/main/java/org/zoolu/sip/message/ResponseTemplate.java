@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2005 Luca Veltri - University of Parma - Italy
+ *
+ *  This file is part of MjSip (http://www.mjsip.org)
+ *
+ *  MjSip is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  MjSip is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with MjSip; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *  Author(s):
+ *  Luca Veltri (luca.veltri@unipr.it)
+ *
+ *  Modified:
+ *  Benhur Langoni (bhlangonijr@gmail.com)
+ *  Thiago Camargo (barata7@gmail.com)
+ */
+package org.zoolu.sip.message;
+
+
+import org.zoolu.sip.header.ContentLengthHeader;
+import org.zoolu.sip.header.Header;
+import org.zoolu.sip.header.SipHeaders;
+import org.zoolu.sip.header.StatusLine;
+import org.zoolu.sip.header.ToHeader;
+import org.zoolu.tools.ByteEncoder;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+
+/**
+ * ResponseTemplate is a bodiless SIP response whose status line and constant
+ * headers are encoded once, at construction time.
+ * <p/> Responses are then written straight into a ByteBuffer by copying the
+ * Via, Record-Route (for 180-299 codes), To, From, Call-ID and CSeq headers
+ * of the request as they are, followed by the pre-encoded bytes.
+ * The output is the same as the one of BaseMessageFactory.createResponse()
+ * with the same status line and headers.
+ * <p/> ResponseTemplates are immutable and can be shared between threads.
+ */
+public class ResponseTemplate {
+
+    private static final byte[] TAG_PARAM = {';', 't', 'a', 'g', '='};
+
+    private final int code;
+    private final byte[] statusLine;
+    private final byte[] tail;
+
+    /**
+     * Costructs a new ResponseTemplate
+     *
+     * @param code      the response code
+     * @param reason    the response reason
+     * @param constants headers added to every response, after the request-derived ones
+     */
+    public ResponseTemplate(int code, String reason, Header... constants) {
+        this.code = code;
+        StatusLine sl = new StatusLine(code, reason);
+        statusLine = new byte[sl.encodedLength()];
+        sl.encodeTo(ByteBuffer.wrap(statusLine));
+        Header contentLength = new ContentLengthHeader(0);
+        int len = contentLength.encodedLength() + 4;
+        for (int i = 0; i < constants.length; i++) len += constants[i].encodedLength();
+        tail = new byte[len];
+        ByteBuffer buffer = ByteBuffer.wrap(tail);
+        for (int i = 0; i < constants.length; i++) constants[i].encodeTo(buffer);
+        contentLength.encodeTo(buffer);
+        // end of headers and empty body
+        ByteEncoder.putCRLF(buffer);
+        ByteEncoder.putCRLF(buffer);
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Gets the number of bytes written by encodeTo
+     *
+     * @param req
+     * @param localTag
+     * @param extra
+     * @return
+     */
+    public int encodedLength(Message req, String localTag, Header... extra) {
+        int len = statusLine.length + tail.length;
+        len += encodedLength(req.getHeaders(SipHeaders.Via));
+        if (copiesRecordRoutes()) {
+            len += encodedLength(req.getHeaders(SipHeaders.Record_Route));
+        }
+        len += toLength(req, localTag);
+        len += encodedLength(req.getHeader(SipHeaders.From));
+        len += encodedLength(req.getHeader(SipHeaders.CallID));
+        len += encodedLength(req.getHeader(SipHeaders.CSeq));
+        for (int i = 0; i < extra.length; i++) len += extra[i].encodedLength();
+        return len;
+    }
+
+    /**
+     * Writes the response to <i>req</i> into <i>buffer</i>, starting at its position.
+     * A BufferOverflowException is thrown if fewer than encodedLength() bytes remain.
+     *
+     * @param req      the request message
+     * @param localTag the local tag in the 'To' header, or null
+     * @param buffer
+     * @param extra    request-specific headers (e.g. WWW-Authenticate), written before the constant ones
+     */
+    public void encodeTo(Message req, String localTag, ByteBuffer buffer, Header... extra) {
+        buffer.put(statusLine);
+        encodeTo(req.getHeaders(SipHeaders.Via), buffer);
+        if (copiesRecordRoutes()) {
+            encodeTo(req.getHeaders(SipHeaders.Record_Route), buffer);
+        }
+        encodeTo(req, localTag, buffer);
+        encodeTo(req.getHeader(SipHeaders.From), buffer);
+        encodeTo(req.getHeader(SipHeaders.CallID), buffer);
+        encodeTo(req.getHeader(SipHeaders.CSeq), buffer);
+        for (int i = 0; i < extra.length; i++) extra[i].encodeTo(buffer);
+        buffer.put(tail);
+    }
+
+    /**
+     * Writes the response to <i>req</i> into a new heap buffer.
+     *
+     * @param req
+     * @param localTag
+     * @param extra
+     * @return the flipped buffer
+     */
+    public ByteBuffer encode(Message req, String localTag, Header... extra) {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedLength(req, localTag, extra));
+        encodeTo(req, localTag, buffer, extra);
+        buffer.flip();
+        return buffer;
+    }
+
+    private boolean copiesRecordRoutes() {
+        return code >= 180 && code < 300;
+    }
+
+    /**
+     * Whether the local tag is appended to the raw To header; otherwise a To header
+     * with its tag replaced is encoded.
+     */
+    private static boolean appendsTag(Message req, String localTag) {
+        return localTag != null && !req.getToHeader().hasTag();
+    }
+
+    private static int toLength(Message req, String localTag) {
+        if (localTag == null) {
+            return encodedLength(req.getHeader(SipHeaders.To));
+        }
+        if (appendsTag(req, localTag)) {
+            return encodedLength(req.getHeader(SipHeaders.To)) + TAG_PARAM.length + ByteEncoder.length(localTag);
+        }
+        return retagged(req, localTag).encodedLength();
+    }
+
+    private static void encodeTo(Message req, String localTag, ByteBuffer buffer) {
+        if (localTag == null) {
+            encodeTo(req.getHeader(SipHeaders.To), buffer);
+        } else if (appendsTag(req, localTag)) {
+            req.getHeader(SipHeaders.To).encodeTo(buffer);
+            // overwrite the CRLF
+            buffer.position(buffer.position() - 2);
+            buffer.put(TAG_PARAM);
+            ByteEncoder.put(buffer, localTag);
+            ByteEncoder.putCRLF(buffer);
+        } else {
+            retagged(req, localTag).encodeTo(buffer);
+        }
+    }
+
+    private static Header retagged(Message req, String localTag) {
+        ToHeader toh = new ToHeader(req.getToHeader());
+        toh.setParameter("tag", localTag);
+        return toh;
+    }
+
+    private static int encodedLength(Header h) {
+        return h == null ? 0 : h.encodedLength();
+    }
+
+    private static int encodedLength(List<?> headers) {
+        int len = 0;
+        for (int i = 0; i < headers.size(); i++) len += ((Header) headers.get(i)).encodedLength();
+        return len;
+    }
+
+    private static void encodeTo(Header h, ByteBuffer buffer) {
+        if (h != null) {
+            h.encodeTo(buffer);
+        }
+    }
+
+    private static void encodeTo(List<?> headers, ByteBuffer buffer) {
+        for (int i = 0; i < headers.size(); i++) ((Header) headers.get(i)).encodeTo(buffer);
+    }
+}
@@ -28,9 +28,11 @@
 package org.zoolu.sip.message;
 
 import org.apache.log4j.Logger;
+import org.xmpp.jnodes.nio.ByteBufferPool;
 import org.xmpp.jnodes.nio.DatagramListener;
 import org.xmpp.jnodes.nio.ListenerDatagramChannel;
 import org.xmpp.jnodes.nio.SelDatagramChannel;
+import org.zoolu.sip.header.Header;
 import org.zoolu.tools.Random;
 
 import java.io.IOException;
@@ -42,6 +44,7 @@ import java.nio.ByteBuffer;
 
 public class SipChannel {
     private static final Logger log = Logger.getLogger(SipChannel.class);
+    private static final ByteBufferPool sendBuffers = new ByteBufferPool();
     private final SocketAddress remoteAddress;
     private final String id;
     private final DatagramListener listener;
@@ -97,6 +100,43 @@ public class SipChannel {
         }
     }
 
+    /**
+     * Encodes the message straight into a pooled buffer and sends it.
+     * Messages larger than the pooled buffers get a buffer of their own.
+     */
+    public void send(BaseMessage message, SocketAddress address) {
+        final int length = message.encodedLength();
+        final boolean pooled = length <= sendBuffers.getBufferSize();
+        final ByteBuffer byteBuffer = pooled ? sendBuffers.acquire() : ByteBuffer.allocateDirect(length);
+        try {
+            message.encodeTo(byteBuffer);
+            byteBuffer.flip();
+            send(byteBuffer, address);
+        } finally {
+            if (pooled) {
+                sendBuffers.release(byteBuffer);
+            }
+        }
+    }
+
+    /**
+     * Writes the response to <i>req</i> out of a pre-encoded template into a pooled buffer and sends it.
+     */
+    public void send(ResponseTemplate template, Message req, String localTag, SocketAddress address, Header... extra) {
+        final int length = template.encodedLength(req, localTag, extra);
+        final boolean pooled = length <= sendBuffers.getBufferSize();
+        final ByteBuffer byteBuffer = pooled ? sendBuffers.acquire() : ByteBuffer.allocateDirect(length);
+        try {
+            template.encodeTo(req, localTag, byteBuffer, extra);
+            byteBuffer.flip();
+            send(byteBuffer, address);
+        } finally {
+            if (pooled) {
+                sendBuffers.release(byteBuffer);
+            }
+        }
+    }
+
     public void closeDatagramChannel() {
         try {
             datagramChannel.close();
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2005 Luca Veltri - University of Parma - Italy
+ *
+ *  This file is part of MjSip (http://www.mjsip.org)
+ *
+ *  MjSip is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  MjSip is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with MjSip; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *  Author(s):
+ *  Luca Veltri (luca.veltri@unipr.it)
+ *
+ *  Modified:
+ *  Benhur Langoni (bhlangonijr@gmail.com)
+ *  Thiago Camargo (barata7@gmail.com)
+ */
+
+package org.zoolu.sip.provider;
+
+
+import org.zoolu.sip.header.Header;
+import org.zoolu.sip.header.RawHeader;
+
+
+/**
+ * Class SipByteParser scans a SIP message directly on its raw bytes.
+ * <p/> It follows the same line and header folding rules of SipParser, but headers are returned
+ * as RawHeaders pointing into the original array, so nothing is decoded until it is requested.
+ */
+public class SipByteParser {
+
+    private final byte[] data;
+    private final int end;
+    private int index;
+
+    /**
+     * Creates a new SipByteParser over <i>len</i> bytes of <i>data</i> starting at <i>offset</i>.
+     * As with SipParser, leading and trailing control chars and spaces are ignored.
+     *
+     * @param data
+     * @param offset
+     * @param len
+     */
+    public SipByteParser(byte[] data, int offset, int len) {
+        int begin = offset;
+        int last = offset + len;
+        while (begin < last && (data[begin] & 0xff) <= ' ') {
+            begin++;
+        }
+        while (last > begin && (data[last - 1] & 0xff) <= ' ') {
+            last--;
+        }
+        this.data = data;
+        this.index = begin;
+        this.end = last;
+    }
+
+    public int getPos() {
+        return index;
+    }
+
+    public boolean hasMore() {
+        return index < end;
+    }
+
+    /**
+     * Whether the remaining bytes start with "SIP/" (ignoring case), i.e. the message is a response
+     *
+     * @return
+     */
+    public boolean isStatusLine() {
+        return end - index > 4 && (data[index] | 0x20) == 's' && (data[index + 1] | 0x20) == 'i'
+                && (data[index + 2] | 0x20) == 'p' && data[index + 3] == '/';
+    }
+
+    /**
+     * Returns the first line (request or status line) and goes to the next line.
+     *
+     * @return
+     */
+    public String getFirstLine() {
+        int begin = index;
+        int eoh = indexOfEOH();
+        index = indexOfNextLine(eoh);
+        return new String(data, begin, eoh - begin);
+    }
+
+    /**
+     * Returns the next header and goes to the next line, or null if the line is not a header
+     * (e.g. the empty line before the body).
+     *
+     * @return
+     */
+    public Header getHeader() {
+        if (!hasMore()) {
+            return null;
+        }
+        int begin = index;
+        int eoh = indexOfEOH();
+        index = indexOfNextLine(eoh);
+        int colon = begin;
+        while (colon < eoh && data[colon] != ':') {
+            colon++;
+        }
+        if (colon == eoh) {
+            return null;
+        }
+        int nameBegin = skipSpaces(begin, colon);
+        int nameEnd = trimSpaces(nameBegin, colon);
+        int valueBegin = skipSpaces(colon + 1, eoh);
+        int valueEnd = trimSpaces(valueBegin, eoh);
+        return new RawHeader(data, nameBegin, nameEnd - nameBegin, valueBegin, valueEnd - valueBegin);
+    }
+
+    /**
+     * Returns the number of bytes left
+     *
+     * @return
+     */
+    public int length() {
+        return end - index;
+    }
+
+    private int skipSpaces(int i, int limit) {
+        while (i < limit && (data[i] & 0xff) <= ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private int trimSpaces(int begin, int i) {
+        while (i > begin && (data[i - 1] & 0xff) <= ' ') {
+            i--;
+        }
+        return i;
+    }
+
+    private static boolean isCRLF(byte b) {
+        return b == '\r' || b == '\n';
+    }
+
+    private int indexOfNextLine(int i) {
+        while (i < end && !isCRLF(data[i])) {
+            i++;
+        }
+        if (i < end) {
+            if (data[i] == '\r' && i + 1 < end && data[i + 1] == '\n') {
+                i += 2;
+            } else {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Index of the end of the header (EOH), taking folded lines into account
+     */
+    private int indexOfEOH() {
+        int i = index;
+        while (true) {
+            while (i < end && !isCRLF(data[i])) {
+                i++;
+            }
+            if (i >= end) {
+                return end;
+            }
+            int next = indexOfNextLine(i);
+            if (next >= end || (data[next] != ' ' && data[next] != '\t')) {
+                return i;
+            }
+            i = next;
+        }
+    }
+}
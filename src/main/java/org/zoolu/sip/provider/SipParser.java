@@ -103,6 +103,14 @@ public class SipParser extends Parser {
      */
     public static char[] SEPARATOR = {' ', '\t', '\r', '\n', '(', ')', '<', '>', ',', ';', '\\', '"', '/', '[', ']', '?', '=', '{', '}'};
 
+    private static final int MARK_CLASS = 0x10;
+    private static final int SEPARATOR_CLASS = 0x20;
+
+    static {
+        addClass(MARK, MARK_CLASS);
+        addClass(SEPARATOR, SEPARATOR_CLASS);
+    }
+
     /**
      * Checks whether a char is any MARK
      *
@@ -110,7 +118,7 @@ public class SipParser extends Parser {
      * @return
      */
     public static boolean isMark(char c) {  //return (c=='-' || c=='_' || c=='.' || c=='!' || c=='~' || c=='*' || c=='\'' || c=='|');
-        return isAnyOf(MARK, c);
+        return isClass(c, MARK_CLASS);
     }
 
     /**
@@ -120,7 +128,7 @@ public class SipParser extends Parser {
      * @return
      */
     public static boolean isUnreserved(char c) {
-        return (isAlphanum(c) || isMark(c));
+        return isClass(c, ALPHA_CLASS | DIGIT_CLASS | MARK_CLASS);
     }
 
     /**
@@ -130,7 +138,7 @@ public class SipParser extends Parser {
      * @return
      */
     public static boolean isSeparator(char c) {  //return (isSpace(c) || isCRLF(c) || c=='(' || c==')' || c=='<' || c=='>' || c==',' || c==';' || c=='\\' || c=='"' || c=='/' || c=='[' || c==']' || c=='?' || c=='=' || c=='{' || c=='}');
-        return isAnyOf(SEPARATOR, c);
+        return isClass(c, SEPARATOR_CLASS);
     }
 
     /**
@@ -139,8 +147,10 @@ public class SipParser extends Parser {
      * @return
      */
     public int indexOfSeparator() {
+        final String s = str;
+        final int len = s.length();
         int begin = index;
-        while (begin < str.length() && !isSeparator(str.charAt(begin))) {
+        while (begin < len && !isClass(s.charAt(begin), SEPARATOR_CLASS)) {
             begin++;
         }
         return begin;
@@ -131,6 +131,18 @@ public class SipStack {
      */
     public static String serverInfo = release;
 
+    /**
+     * Whether Message constructors compute the message Participants (and their JIDs) right away.
+     * By default they are computed on first Message.getParticipants() call.
+     */
+    public static boolean eager_participants = false;
+
+    /**
+     * Capacity of the JIDFactory cache, in chars (the length of each cached string plus its JID).
+     * Read when JIDFactory.getInstance() is first called.
+     */
+    public static long jid_cache_capacity = 4000 * 64;
+
 
     // ************************** costructor **************************
 
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2005 Luca Veltri - University of Parma - Italy
+ *
+ *  This file is part of MjSip (http://www.mjsip.org)
+ *
+ *  MjSip is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  MjSip is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with MjSip; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *  Author(s):
+ *  Luca Veltri (luca.veltri@unipr.it)
+ *
+ *  Modified:
+ *  Benhur Langoni (bhlangonijr@gmail.com)
+ *  Thiago Camargo (barata7@gmail.com)
+ */
+
+package org.zoolu.tools;
+
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * Class ByteEncoder writes Strings and integers straight into a ByteBuffer,
+ * without building intermediate byte arrays.
+ * <p/> ASCII chars are written as single bytes; any other char is written as UTF-8.
+ */
+public class ByteEncoder {
+
+    /**
+     * Gets the number of bytes <i>str</i> is encoded to ("null" if <i>str</i> is null).
+     *
+     * @param str
+     * @return
+     */
+    public static int length(String str) {
+        if (str == null) {
+            return 4;
+        }
+        int len = str.length();
+        int bytes = len;
+        for (int i = 0; i < len; i++) {
+            char c = str.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    bytes += 1;
+                } else if (!isSurrogate(c)) {
+                    bytes += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(str.charAt(i + 1))) {
+                    bytes += 2;
+                    i++;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets the number of bytes the decimal representation of <i>n</i> is encoded to.
+     *
+     * @param n
+     * @return
+     */
+    public static int length(int n) {
+        if (n < 0) {
+            return n == Integer.MIN_VALUE ? 11 : 1 + length(-n);
+        }
+        int bytes = 1;
+        while (n >= 10) {
+            n /= 10;
+            bytes++;
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes <i>str</i> ("null" if <i>str</i> is null).
+     *
+     * @param buffer
+     * @param str
+     */
+    public static void put(ByteBuffer buffer, String str) {
+        if (str == null) {
+            str = "null";
+        }
+        int len = str.length();
+        for (int i = 0; i < len; i++) {
+            char c = str.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xc0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3f)));
+            } else if (!isSurrogate(c)) {
+                buffer.put((byte) (0xe0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                buffer.put((byte) (0x80 | (c & 0x3f)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(str.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, str.charAt(++i));
+                buffer.put((byte) (0xf0 | (cp >> 18)));
+                buffer.put((byte) (0x80 | ((cp >> 12) & 0x3f)));
+                buffer.put((byte) (0x80 | ((cp >> 6) & 0x3f)));
+                buffer.put((byte) (0x80 | (cp & 0x3f)));
+            } else {
+                // unpaired surrogate
+                buffer.put((byte) '?');
+            }
+        }
+    }
+
+    /**
+     * Writes the decimal representation of <i>n</i>.
+     *
+     * @param buffer
+     * @param n
+     */
+    public static void put(ByteBuffer buffer, int n) {
+        if (n < 0) {
+            if (n == Integer.MIN_VALUE) {
+                put(buffer, String.valueOf(n));
+                return;
+            }
+            buffer.put((byte) '-');
+            n = -n;
+        }
+        int div = 1;
+        while (n / div >= 10) {
+            div *= 10;
+        }
+        while (div > 0) {
+            buffer.put((byte) ('0' + n / div % 10));
+            div /= 10;
+        }
+    }
+
+    private static boolean isSurrogate(char c) {
+        return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+    }
+
+    /**
+     * Writes CRLF.
+     *
+     * @param buffer
+     */
+    public static void putCRLF(ByteBuffer buffer) {
+        buffer.put((byte) '\r');
+        buffer.put((byte) '\n');
+    }
+}
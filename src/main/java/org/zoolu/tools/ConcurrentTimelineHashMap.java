@@ -7,30 +7,47 @@
 package org.zoolu.tools;
 
 import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.googlecode.concurrentlinkedhashmap.EvictionListener;
 import org.apache.log4j.Logger;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Concurrent LRU map whose entries expire a time to live after they were put.
+ * <p/> Each value is held in a node carrying its own timestamp, so a single map backs both the
+ * entries and their expiry. With access expiry enabled, reads refresh the timestamp too and
+ * entries expire after being idle for the time to live.
+ * <p/> Expired entries are purged by a task run every purgeDelay on a maintenance scheduler, shared by
+ * all maps unless one is given, and by the reads and writes themselves every purgeCounterLimit operations.
+ * close() stops the scheduled purge of a map; shutdown() stops the shared scheduler.
+ */
 public class ConcurrentTimelineHashMap <K, V>  extends java.util.AbstractMap<K,V>
         implements java.util.concurrent.ConcurrentMap<K,V>, java.io.Serializable {
     static final Logger log = Logger.getLogger(ConcurrentTimelineHashMap.class);
 
-    private final ConcurrentLinkedHashMap<K, V> map;
-    private final ConcurrentLinkedHashMap<K, Long> expireMap;
+    private final ConcurrentLinkedHashMap<K, Node<K, V>> map;
+    private final TimeBucketIndex<Node<K, V>> expireIndex;
     private final ScheduledExecutorService scheduledService;
-    private final ExecutorService service;
-    private long ttl = DEFAULT_TTL;
-    private long purgeCounterLimit = DEFAULT_PURGE_LIMIT;
+    private volatile long ttl = DEFAULT_TTL;
+    private volatile long purgeCounterLimit = DEFAULT_PURGE_LIMIT;
     private long purgeDelay = DEFAULT_PURGE_DELAY;
+    private volatile boolean accessExpiry = false;
+    private volatile TimelineListener<K, V> listener;
 
     private static final int DEFAULT_MAX_ENTRIES = 5000;
     private static final long DEFAULT_TTL = 1000 * 60 * 60;
     private static final long DEFAULT_PURGE_DELAY = 1000 * 60 * 10;
     private static final long DEFAULT_PURGE_LIMIT = 2000;
+    private static final long MAX_RESOLUTION = 1000;
+
+    private static ScheduledExecutorService sharedScheduler;
 
     private final AtomicInteger counter = new AtomicInteger(0);
+    private final AtomicBoolean purging = new AtomicBoolean(false);
 
     private Future purgeTask = null;
 
@@ -43,23 +60,67 @@ public class ConcurrentTimelineHashMap <K, V>  extends java.util.AbstractMap<K,V
     }
 
     public ConcurrentTimelineHashMap(int maxEntries, long timeToLive, long purgeDelay) {
-        map = new ConcurrentLinkedHashMap.Builder<K, V>()
-                .maximumWeightedCapacity(maxEntries)
-                .build();
-        expireMap = new ConcurrentLinkedHashMap.Builder<K, Long>()
+        this(maxEntries, timeToLive, purgeDelay, getSharedScheduler());
+    }
+
+    /**
+     * @param maxEntries
+     * @param timeToLive
+     * @param purgeDelay
+     * @param scheduler runs the scheduled purge; it is not shut down by close()
+     */
+    public ConcurrentTimelineHashMap(int maxEntries, long timeToLive, long purgeDelay, ScheduledExecutorService scheduler) {
+        map = new ConcurrentLinkedHashMap.Builder<K, Node<K, V>>()
                 .maximumWeightedCapacity(maxEntries)
+                .listener(new EvictionListener<K, Node<K, V>>() {
+                    public void onEviction(K key, Node<K, V> node) {
+                        expireIndex.remove(node, node.time);
+                        final TimelineListener<K, V> l = listener;
+                        if (l != null) {
+                            try {
+                                l.onEviction(key, node.value);
+                            } catch (Exception e) {
+                                log.error("Error notifying eviction: ", e);
+                            }
+                        }
+                    }
+                })
                 .build();
         setTtl(timeToLive);
-        service = Executors.newSingleThreadExecutor(new NamingThreadFactory("ConcurrenExpirableHashMap.Task"));
-        scheduledService = Executors.newSingleThreadScheduledExecutor(
-                new NamingThreadFactory("ConcurrenExpirableHashMap.Scheduled.Task"));
+        // about 64 buckets per time to live
+        expireIndex = new TimeBucketIndex<Node<K, V>>(Math.max(1, Math.min(MAX_RESOLUTION, timeToLive / 64)));
+        scheduledService = scheduler;
         setPurgeDelay(purgeDelay);
 
         enableScheduledPurge();
 
     }
 
-    public void enableScheduledPurge() {
+    /**
+     * Gets the scheduler shared by the maps created without one, creating its single daemon thread on first use.
+     *
+     * @return
+     */
+    public static synchronized ScheduledExecutorService getSharedScheduler() {
+        if (sharedScheduler == null || sharedScheduler.isShutdown()) {
+            sharedScheduler = Executors.newSingleThreadScheduledExecutor(
+                    new NamingThreadFactory("ConcurrentTimelineHashMap.Maintenance", true));
+        }
+        return sharedScheduler;
+    }
+
+    /**
+     * Shuts the shared scheduler down. Maps using it stop being purged on schedule,
+     * but keep being purged by their reads and writes.
+     */
+    public static synchronized void shutdown() {
+        if (sharedScheduler != null) {
+            sharedScheduler.shutdownNow();
+            sharedScheduler = null;
+        }
+    }
+
+    public synchronized void enableScheduledPurge() {
         if (purgeTask != null) {
             log.warn("There is already an active scheduled purge task");
             return;
@@ -67,8 +128,7 @@ public class ConcurrentTimelineHashMap <K, V>  extends java.util.AbstractMap<K,V
         purgeTask = scheduledService.scheduleWithFixedDelay(new Runnable() {
             public void run() {
                 try {
-                    cleanUpExpiredWithNoResult().get(); //delay scheduling of next execution if current
-                                                        // is taking too long
+                    purge();
                 } catch (Exception e) {
                     log.error("Error cleaning up expired entries: ",e);
                 }
@@ -76,44 +136,43 @@ public class ConcurrentTimelineHashMap <K, V>  extends java.util.AbstractMap<K,V
         }, getPurgeDelay(), getPurgeDelay(), TimeUnit.MILLISECONDS);
     }
 
-    public void disableScheduledPurge() {
+    public synchronized void disableScheduledPurge() {
         if (purgeTask == null) {
             log.warn("There is not active scheduled purge task running");
             return;
         }
-        purgeTask.cancel(true);
+        purgeTask.cancel(false);
+        purgeTask = null;
     }
 
-    @Override
-    public Set<Entry<K, V>> entrySet() {
-        return map.entrySet();
-    }
-
-    public void putAll(Map<? extends K, ? extends V> m) {
-        map.putAll(m);
-    }
-
-    @Override
-    public boolean equals(Object o) {
-        return map.equals(o);
+    /**
+     * Stops the scheduled purge of this map. The scheduler itself is left running.
+     */
+    public synchronized void close() {
+        if (purgeTask != null) {
+            purgeTask.cancel(false);
+            purgeTask = null;
+        }
     }
 
     @Override
-    public int hashCode() {
-        return map.hashCode();
+    public Set<Entry<K, V>> entrySet() {
+        return new EntrySet();
     }
 
-    @Override
-    public String toString() {
-        return map.toString();
+    public void putAll(Map<? extends K, ? extends V> m) {
+        for (Entry<? extends K, ? extends V> e : m.entrySet()) {
+            put(e.getKey(), e.getValue());
+        }
     }
 
     public boolean remove(Object key, Object value) {
-        final boolean r = map.remove(key, value);
-        if (r) {
-            expireMap.remove(key);
+        final Node<K, V> node = map.get(key);
+        if (node != null && node.value.equals(value) && map.remove(key, node)) {
+            unstamp(node);
+            return true;
         }
-        return  r;
+        return false;
     }
 
     @Override
@@ -121,17 +180,27 @@ public class ConcurrentTimelineHashMap <K, V>  extends java.util.AbstractMap<K,V
         return map.keySet();
     }
 
-    @Override
-    public Collection<V> values() {
-        return map.values();
-    }
-
     public boolean replace(K key, V oldValue, V newValue) {
-        return map.replace(key, oldValue, newValue);
+        final Node<K, V> node = map.get(key);
+        if (node == null || !node.value.equals(oldValue)) {
+            return false;
+        }
+        final Node<K, V> replacement = new Node<K, V>(key, newValue, System.currentTimeMillis());
+        if (!map.replace(key, node, replacement)) {
+            return false;
+        }
+        stamp(replacement, node);
+        return true;
     }
 
     public V replace(K key, V value) {
-        return map.replace(key, value);
+        final Node<K, V> replacement = new Node<K, V>(key, value, System.currentTimeMillis());
+        final Node<K, V> node = map.replace(key, replacement);
+        if (node == null) {
+            return null;
+        }
+        stamp(replacement, node);
+        return node.value;
     }
 
 
@@ -140,7 +209,6 @@ public class ConcurrentTimelineHashMap <K, V>  extends java.util.AbstractMap<K,V
     }
 
     public void setCapacity(int capacity) {
-        expireMap.setCapacity(capacity);
         map.setCapacity(capacity);
     }
 
@@ -160,8 +228,8 @@ public class ConcurrentTimelineHashMap <K, V>  extends java.util.AbstractMap<K,V
 
     @Override
     public void clear() {
-        expireMap.clear();
         map.clear();
+        expireIndex.clear();
     }
 
     @Override
@@ -169,57 +237,119 @@ public class ConcurrentTimelineHashMap <K, V>  extends java.util.AbstractMap<K,V
         return map.containsKey(key);
     }
 
-    @Override
-    public boolean containsValue(Object value) {
-        return map.containsValue(value);
-    }
-
     @Override
     public V get(Object key) {
-        return map.get(key);
+        countOperation();
+        final Node<K, V> node = map.get(key);
+        if (node == null) {
+            return null;
+        }
+        if (accessExpiry) {
+            touch(node);
+        }
+        return node.value;
     }
 
     public V put(K key, V value) {
-        if  (getPurgeCounterLimit() > 0 &&
-                counter.incrementAndGet() > getPurgeCounterLimit() &&
-                counter.getAndAdd(0) > getPurgeCounterLimit()) {
-            cleanUpExpiredWithNoResult();
-        }
-        expireMap.put(key, System.currentTimeMillis());
-        return map.put(key, value);
+        countOperation();
+        final Node<K, V> node = new Node<K, V>(key, value, System.currentTimeMillis());
+        final Node<K, V> previous = map.put(key, node);
+        stamp(node, previous);
+        return previous == null ? null : previous.value;
     }
 
     public V putIfAbsent(K key, V value) {
-        if (getPurgeCounterLimit() > 0 &&
-                counter.incrementAndGet() > getPurgeCounterLimit() &&
-                counter.getAndAdd(0) > getPurgeCounterLimit()) {
-            cleanUpExpiredWithNoResult();
+        countOperation();
+        final Node<K, V> node = new Node<K, V>(key, value, System.currentTimeMillis());
+        final Node<K, V> previous = map.putIfAbsent(key, node);
+        if (previous == null) {
+            stamp(node, null);
+            return null;
         }
-        expireMap.putIfAbsent(key, System.currentTimeMillis());
-        return map.putIfAbsent(key, value);
+        return previous.value;
     }
 
     @Override
     public V remove(Object key) {
-        expireMap.remove(key);
-        return map.remove(key);
+        countOperation();
+        final Node<K, V> node = map.remove(key);
+        if (node == null) {
+            return null;
+        }
+        unstamp(node);
+        return node.value;
+    }
+
+    private void stamp(Node<K, V> node, Node<K, V> replaced) {
+        expireIndex.add(node, node.time, null);
+        if (replaced != null) {
+            unstamp(replaced);
+        }
+    }
+
+    private void unstamp(Node<K, V> node) {
+        expireIndex.remove(node, node.time);
+    }
+
+    private void touch(Node<K, V> node) {
+        final long now = System.currentTimeMillis();
+        final long previous = Node.TIME.getAndSet(node, now);
+        if (previous != now) {
+            expireIndex.add(node, now, previous);
+        }
     }
 
     /**
-     * Force purge of all expired entries for this map
+     * Purges expired entries in the calling thread every purgeCounterLimit reads and writes.
+     * A purge only touches the entries that are due, so its cost is spread over the operations.
+     */
+    private void countOperation() {
+        final long limit = getPurgeCounterLimit();
+        if (limit > 0 && counter.incrementAndGet() >= limit) {
+            counter.set(0);
+            purge();
+        }
+    }
+
+    /**
+     * Purges expired entries using the default time to live, unless another thread is already at it
+     */
+    private void purge() {
+        if (purging.compareAndSet(false, true)) {
+            try {
+                cleanUpExpired(getTtl());
+            } finally {
+                purging.set(false);
+            }
+        }
+    }
+
+    /**
+     * Force purge of all expired entries for this map.
+     * Only the entries indexed in the time buckets that are due are looked at.
      *
      * @param timeout
-     * @return
+     * @return the values of the purged entries
      */
     public List<V> cleanUpExpired(final long timeout) {
 
-        List<V> l = new ArrayList<V>();
-
-        for (Entry<K, Long> entry: expireMap.entrySet()) {
-            if (System.currentTimeMillis() - entry.getValue() > timeout) {
-                l.add(map.get(entry.getKey()));
-                expireMap.remove(entry.getKey());
-                map.remove(entry.getKey());
+        final List<V> l = new ArrayList<V>();
+        final long cutoff = System.currentTimeMillis() - timeout;
+        final TimelineListener<K, V> listener = this.listener;
+
+        for (final Node<K, V> node : expireIndex.due(cutoff)) {
+            final long time = node.time;
+            // skip nodes replaced, removed or touched since they were indexed
+            if (time < cutoff && map.remove(node.key, node)) {
+                expireIndex.remove(node, time);
+                l.add(node.value);
+                if (listener != null) {
+                    try {
+                        listener.onExpiration(node.key, node.value);
+                    } catch (Exception e) {
+                        log.error("Error notifying expiration: ", e);
+                    }
+                }
             }
         }
 
@@ -235,16 +365,6 @@ public class ConcurrentTimelineHashMap <K, V>  extends java.util.AbstractMap<K,V
         return cleanUpExpired(getTtl());
     }
 
-    private Future cleanUpExpiredWithNoResult() {
-
-        return service.submit(new Runnable() {
-            public void run() {
-                cleanUpExpired(getTtl());
-            }
-        });
-
-    }
-
     public long getTtl() {
         return ttl;
     }
@@ -262,7 +382,7 @@ public class ConcurrentTimelineHashMap <K, V>  extends java.util.AbstractMap<K,V
     }
 
     /**
-     * Define a threshold limit (on put & putIfAbsent count) for checking for
+     * Define a threshold limit (on get, put, putIfAbsent & remove count) for checking for
      * expired entries
      * @param purgeCounterLimit
      */
@@ -282,4 +402,99 @@ public class ConcurrentTimelineHashMap <K, V>  extends java.util.AbstractMap<K,V
     public void setPurgeDelay(long purgeDelay) {
         this.purgeDelay = purgeDelay;
     }
+
+    public boolean isAccessExpiry() {
+        return accessExpiry;
+    }
+
+    /**
+     * Whether get() refreshes the entry timestamp, making entries expire
+     * once idle for the time to live instead of once older than it
+     * @param accessExpiry
+     */
+    public void setAccessExpiry(boolean accessExpiry) {
+        this.accessExpiry = accessExpiry;
+    }
+
+    public TimelineListener<K, V> getListener() {
+        return listener;
+    }
+
+    /**
+     * Listener notified of expired and evicted entries
+     * @param listener
+     */
+    public void setListener(TimelineListener<K, V> listener) {
+        this.listener = listener;
+    }
+
+    private static final class Node<K, V> {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        static final AtomicLongFieldUpdater<Node<?, ?>> TIME =
+                (AtomicLongFieldUpdater) AtomicLongFieldUpdater.newUpdater(Node.class, "time");
+
+        final K key;
+        final V value;
+        volatile long time;
+
+        Node(K key, V value, long time) {
+            if (key == null || value == null) {
+                throw new NullPointerException();
+            }
+            this.key = key;
+            this.value = value;
+            this.time = time;
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<K, V>> {
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentTimelineHashMap.this.clear();
+        }
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            final Iterator<Node<K, V>> nodes = map.values().iterator();
+            return new Iterator<Entry<K, V>>() {
+                private Node<K, V> current;
+
+                public boolean hasNext() {
+                    return nodes.hasNext();
+                }
+
+                public Entry<K, V> next() {
+                    current = nodes.next();
+                    return new TimelineEntry(current.key, current.value);
+                }
+
+                public void remove() {
+                    if (current == null) {
+                        throw new IllegalStateException();
+                    }
+                    ConcurrentTimelineHashMap.this.remove(current.key, current.value);
+                    current = null;
+                }
+            };
+        }
+    }
+
+    private final class TimelineEntry extends SimpleEntry<K, V> {
+
+        TimelineEntry(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
 }
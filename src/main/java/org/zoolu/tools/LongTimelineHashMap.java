@@ -0,0 +1,374 @@
+/* *
+ *  @author Thiago Camargo (barata7@gmail.com)
+ *  @author Benhur Langoni (bhlangonijr@gmail.com)
+ *
+ */
+
+package org.zoolu.tools;
+
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Memory-lean counterpart of ConcurrentTimelineHashMap for large registries of short-lived entries,
+ * keyed by primitive longs. String keys (Call-IDs, branches) are hashed to 64 bits and not retained,
+ * so two keys with the same 64-bit hash share an entry.
+ * <p/> Entries live in open-addressed tables of parallel key, timestamp and value arrays, split in
+ * lock-striped segments: there is no per-entry object besides the value itself. The map is not
+ * bounded by a capacity and has no LRU eviction; entries only go away when removed or expired.
+ * Purges scan the timestamp arrays, which are contiguous.
+ */
+public class LongTimelineHashMap<V> {
+    static final Logger log = Logger.getLogger(LongTimelineHashMap.class);
+
+    private static final int DEFAULT_INITIAL_CAPACITY = 1024;
+    private static final long DEFAULT_TTL = 1000 * 60 * 60;
+    private static final long DEFAULT_PURGE_DELAY = 1000 * 60 * 10;
+    private static final int SEGMENT_BITS = 4;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+
+    private final Segment<V>[] segments;
+    private final ScheduledExecutorService scheduledService;
+    private volatile long ttl;
+    private volatile boolean accessExpiry = false;
+    private Future<?> purgeTask = null;
+
+    public LongTimelineHashMap() {
+        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_TTL, DEFAULT_PURGE_DELAY);
+    }
+
+    public LongTimelineHashMap(int initialCapacity, long timeToLive, long purgeDelay) {
+        this(initialCapacity, timeToLive, purgeDelay, ConcurrentTimelineHashMap.getSharedScheduler());
+    }
+
+    /**
+     * @param initialCapacity number of entries the map holds before growing
+     * @param timeToLive
+     * @param purgeDelay      delay between scheduled purges, 0 to disable them
+     * @param scheduler       runs the scheduled purge; it is not shut down by close()
+     */
+    public LongTimelineHashMap(int initialCapacity, long timeToLive, long purgeDelay, ScheduledExecutorService scheduler) {
+        @SuppressWarnings("unchecked")
+        final Segment<V>[] segments = (Segment<V>[]) new Segment<?>[SEGMENTS];
+        this.segments = segments;
+        final int perSegment = Math.max(initialCapacity / SEGMENTS, 1);
+        for (int i = 0; i < SEGMENTS; i++) segments[i] = new Segment<V>(perSegment);
+        ttl = timeToLive;
+        scheduledService = scheduler;
+        if (purgeDelay > 0) {
+            purgeTask = scheduledService.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    try {
+                        cleanUpExpired();
+                    } catch (Exception e) {
+                        log.error("Error cleaning up expired entries: ", e);
+                    }
+                }
+            }, purgeDelay, purgeDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Hashes a String key to 64 bits (FNV-1a over its chars).
+     *
+     * @param key
+     * @return
+     */
+    public static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * Spreads the bits of a key, so that sequential keys do not cluster in the tables.
+     */
+    static long mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private Segment<V> segmentFor(long mixed) {
+        return segments[(int) (mixed >>> (64 - SEGMENT_BITS))];
+    }
+
+    public V get(long key) {
+        final long mixed = mix(key);
+        return segmentFor(mixed).get(key, mixed, accessExpiry ? System.currentTimeMillis() : 0);
+    }
+
+    public V put(long key, V value) {
+        final long mixed = mix(key);
+        return segmentFor(mixed).put(key, mixed, value, System.currentTimeMillis(), false);
+    }
+
+    public V putIfAbsent(long key, V value) {
+        final long mixed = mix(key);
+        return segmentFor(mixed).put(key, mixed, value, System.currentTimeMillis(), true);
+    }
+
+    public V remove(long key) {
+        final long mixed = mix(key);
+        return segmentFor(mixed).remove(key, mixed);
+    }
+
+    public boolean containsKey(long key) {
+        final long mixed = mix(key);
+        return segmentFor(mixed).get(key, mixed, 0) != null;
+    }
+
+    public V get(String key) {
+        return get(hash(key));
+    }
+
+    public V put(String key, V value) {
+        return put(hash(key), value);
+    }
+
+    public V putIfAbsent(String key, V value) {
+        return putIfAbsent(hash(key), value);
+    }
+
+    public V remove(String key) {
+        return remove(hash(key));
+    }
+
+    public boolean containsKey(String key) {
+        return containsKey(hash(key));
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<V> s : segments) size += s.size();
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        for (Segment<V> s : segments) s.clear();
+    }
+
+    /**
+     * Force purge of all expired entries for this map
+     *
+     * @param timeout
+     * @return the values of the purged entries
+     */
+    public List<V> cleanUpExpired(long timeout) {
+        final List<V> l = new ArrayList<V>();
+        final long cutoff = System.currentTimeMillis() - timeout;
+        for (Segment<V> s : segments) s.purge(cutoff, l);
+        return l;
+    }
+
+    /**
+     * Force purge of all expired entries for this map
+     * using default time to live
+     * @return
+     */
+    public List<V> cleanUpExpired() {
+        return cleanUpExpired(getTtl());
+    }
+
+    /**
+     * Stops the scheduled purge of this map. The scheduler itself is left running.
+     */
+    public synchronized void close() {
+        if (purgeTask != null) {
+            purgeTask.cancel(false);
+            purgeTask = null;
+        }
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Time to live for expiring the entries
+     * @param ttl
+     */
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    public boolean isAccessExpiry() {
+        return accessExpiry;
+    }
+
+    /**
+     * Whether get() refreshes the entry timestamp
+     * @param accessExpiry
+     */
+    public void setAccessExpiry(boolean accessExpiry) {
+        this.accessExpiry = accessExpiry;
+    }
+
+    /**
+     * Linear probing table; a slot is free when its value is null.
+     * Removals shift the following entries back, so there are no tombstones.
+     */
+    private static final class Segment<V> {
+        private static final float LOAD_FACTOR = 0.75f;
+
+        private long[] keys;
+        private long[] times;
+        private Object[] values;
+        private int size;
+        private int threshold;
+
+        Segment(int capacity) {
+            allocate(tableSizeFor((int) (capacity / LOAD_FACTOR) + 1));
+        }
+
+        private static int tableSizeFor(int n) {
+            int size = 2;
+            while (size < n) size <<= 1;
+            return size;
+        }
+
+        private void allocate(int length) {
+            keys = new long[length];
+            times = new long[length];
+            values = new Object[length];
+            threshold = (int) (length * LOAD_FACTOR);
+        }
+
+        @SuppressWarnings("unchecked")
+        private V valueAt(int i) {
+            return (V) values[i];
+        }
+
+        private int indexOf(long key, long mixed) {
+            final int mask = values.length - 1;
+            int i = (int) mixed & mask;
+            while (values[i] != null) {
+                if (keys[i] == key) {
+                    return i;
+                }
+                i = (i + 1) & mask;
+            }
+            return -1 - i;
+        }
+
+        synchronized V get(long key, long mixed, long now) {
+            final int i = indexOf(key, mixed);
+            if (i < 0) {
+                return null;
+            }
+            if (now != 0) {
+                times[i] = now;
+            }
+            return valueAt(i);
+        }
+
+        synchronized V put(long key, long mixed, V value, long now, boolean onlyIfAbsent) {
+            if (value == null) {
+                throw new NullPointerException();
+            }
+            int i = indexOf(key, mixed);
+            if (i >= 0) {
+                final V previous = valueAt(i);
+                if (!onlyIfAbsent) {
+                    values[i] = value;
+                    times[i] = now;
+                }
+                return previous;
+            }
+            if (size >= threshold) {
+                resize();
+                i = indexOf(key, mixed);
+            }
+            i = -1 - i;
+            keys[i] = key;
+            times[i] = now;
+            values[i] = value;
+            size++;
+            return null;
+        }
+
+        synchronized V remove(long key, long mixed) {
+            final int i = indexOf(key, mixed);
+            if (i < 0) {
+                return null;
+            }
+            final V previous = valueAt(i);
+            removeAt(i);
+            return previous;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized void clear() {
+            allocate(values.length);
+            size = 0;
+        }
+
+        synchronized void purge(long cutoff, List<V> purged) {
+            for (int i = 0; i < values.length; i++) {
+                // an entry shifted back into i has to be checked too
+                while (values[i] != null && times[i] < cutoff) {
+                    purged.add(valueAt(i));
+                    removeAt(i);
+                }
+            }
+        }
+
+        private void removeAt(int i) {
+            final int mask = values.length - 1;
+            values[i] = null;
+            size--;
+            int j = i;
+            for (;;) {
+                j = (j + 1) & mask;
+                if (values[j] == null) {
+                    return;
+                }
+                final int home = (int) mix(keys[j]) & mask;
+                // move j back into the hole unless its home slot lies cyclically in (i, j]
+                final boolean stays = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+                if (!stays) {
+                    keys[i] = keys[j];
+                    times[i] = times[j];
+                    values[i] = values[j];
+                    values[j] = null;
+                    i = j;
+                }
+            }
+        }
+
+        private void resize() {
+            final long[] oldKeys = keys;
+            final long[] oldTimes = times;
+            final Object[] oldValues = values;
+            allocate(oldValues.length << 1);
+            final int mask = values.length - 1;
+            for (int k = 0; k < oldValues.length; k++) {
+                if (oldValues[k] != null) {
+                    int i = (int) mix(oldKeys[k]) & mask;
+                    while (values[i] != null) i = (i + 1) & mask;
+                    keys[i] = oldKeys[k];
+                    times[i] = oldTimes[k];
+                    values[i] = oldValues[k];
+                }
+            }
+        }
+    }
+}
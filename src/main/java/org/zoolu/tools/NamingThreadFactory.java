@@ -37,9 +37,19 @@ public class NamingThreadFactory
     private final AtomicInteger number = new AtomicInteger(0);
     private final String prefix;
     private final String SEPARATOR = " - ";
+    private final boolean daemon;
     final ThreadGroup group;
 
     public NamingThreadFactory(String prefix) {
+        this(prefix, false);
+    }
+
+    /**
+     * @param prefix
+     * @param daemon whether the threads are daemon threads, which do not keep the JVM running
+     */
+    public NamingThreadFactory(String prefix, boolean daemon) {
+        this.daemon = daemon;
         if (prefix != null)
             this.prefix = prefix;
         else {
@@ -52,8 +62,8 @@ public class NamingThreadFactory
     public Thread newThread(Runnable runnable) {
         this.number.incrementAndGet();
         Thread t = new Thread(this.group, runnable, this.prefix + " - " + this.number.toString(), 0L);
-        if (t.isDaemon()) {
-            t.setDaemon(false);
+        if (t.isDaemon() != daemon) {
+            t.setDaemon(daemon);
         }
         if (t.getPriority() != 5) {
             t.setPriority(5);
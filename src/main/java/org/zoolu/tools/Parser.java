@@ -47,6 +47,8 @@ import java.util.List;
  * <BR><i>digit</i> = 0-9
  * <BR><i>integer</i> = any <i>digit word</i> parsed by {@link java.lang.Integer Integer.parseInt(String)}
  * </PRE>
+ * ASCII chars are classified through a 128-entry table of class bits, and the methods taking a char[]
+ * turn it into a 128-bit mask once per call instead of scanning it for every char.
  */
 public class Parser {
 
@@ -297,9 +299,13 @@ public class Parser {
      * @return
      */
     public Parser goToNextLine() {
-        while (index < str.length() && !isCRLF(str.charAt(index))) {
-            index++;
+        final String s = str;
+        final int len = s.length();
+        int i = index;
+        while (i < len && !isClass(s.charAt(i), CRLF_CLASS)) {
+            i++;
         }
+        index = i;
         // skip the end of the line (i.e. '\r' OR '\n' OR '\r\n')
         if (index < str.length()) {
             if (str.startsWith("\r\n", index)) {
@@ -328,6 +334,91 @@ public class Parser {
      */
     public static char[] WSPCRLF = {' ', '\t', '\r', '\n'};
 
+    // ************************ Char classes ************************
+
+    /**
+     * Class bits of the 128 ASCII chars, so that classifying a char is a single lookup.
+     * Subclasses can add their own classes with addClass(), using the bits from 0x10 up.
+     */
+    private static final byte[] CLASSES = new byte[128];
+
+    protected static final int WSP_CLASS = 0x01;
+    protected static final int CRLF_CLASS = 0x02;
+    protected static final int ALPHA_CLASS = 0x04;
+    protected static final int DIGIT_CLASS = 0x08;
+
+    static {
+        addClass(WSP, WSP_CLASS);
+        addClass(CRLF, CRLF_CLASS);
+        for (char c = 'A'; c <= 'Z'; c++) CLASSES[c] |= ALPHA_CLASS;
+        for (char c = 'a'; c <= 'z'; c++) CLASSES[c] |= ALPHA_CLASS;
+        for (char c = '0'; c <= '9'; c++) CLASSES[c] |= DIGIT_CLASS;
+    }
+
+    /**
+     * Adds the class bit <i>cls</i> to all chars of <i>cc</i>. Non-ASCII chars are ignored.
+     *
+     * @param cc
+     * @param cls
+     */
+    protected static void addClass(char[] cc, int cls) {
+        for (char c : cc) {
+            if (c < 128) {
+                CLASSES[c] |= cls;
+            }
+        }
+    }
+
+    /**
+     * True if char <i>c</i> belongs to any of the classes of <i>cls</i>
+     *
+     * @param c
+     * @param cls
+     * @return
+     */
+    protected static boolean isClass(char c, int cls) {
+        return c < 128 && (CLASSES[c] & cls) != 0;
+    }
+
+    /**
+     * Bitmask of the chars of <i>cc</i> below 64
+     */
+    private static long lowMask(char[] cc) {
+        long mask = 0;
+        for (char c : cc) {
+            if (c < 64) {
+                mask |= 1L << c;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Bitmask of the chars of <i>cc</i> from 64 to 127
+     */
+    private static long highMask(char[] cc) {
+        long mask = 0;
+        for (char c : cc) {
+            if (c >= 64 && c < 128) {
+                mask |= 1L << (c - 64);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * True if char <i>c</i> is in the masks computed from <i>cc</i>; non-ASCII chars are looked up in <i>cc</i>.
+     */
+    private static boolean isAnyOf(long low, long high, char[] cc, char c) {
+        if (c < 64) {
+            return (low & (1L << c)) != 0;
+        }
+        if (c < 128) {
+            return (high & (1L << (c - 64))) != 0;
+        }
+        return isAnyOf(cc, c);
+    }
+
     /**
      * True if char <i>ch</i> is any char of array <i>ca</i>
      *
@@ -372,7 +463,7 @@ public class Parser {
      * @return
      */
     public static boolean isAlpha(char c) {
-        return (isUpAlpha(c) || isLowAlpha(c));
+        return isClass(c, ALPHA_CLASS);
     }
 
     /**
@@ -382,7 +473,7 @@ public class Parser {
      * @return
      */
     public static boolean isAlphanum(char c) {
-        return (isAlpha(c) || isDigit(c));
+        return isClass(c, ALPHA_CLASS | DIGIT_CLASS);
     }
 
     /**
@@ -432,7 +523,7 @@ public class Parser {
      * @return
      */
     public static boolean isCRLF(char c) {
-        return isAnyOf(CRLF, c);
+        return isClass(c, CRLF_CLASS);
     }
 
     /**
@@ -462,7 +553,7 @@ public class Parser {
      * @return
      */
     public static boolean isWSP(char c) {
-        return isAnyOf(WSP, c);
+        return isClass(c, WSP_CLASS);
     }
 
     /**
@@ -472,7 +563,7 @@ public class Parser {
      * @return
      */
     public static boolean isWSPCRLF(char c) {
-        return isAnyOf(WSPCRLF, c);
+        return isClass(c, WSP_CLASS | CRLF_CLASS);
     }
 
 
@@ -526,17 +617,16 @@ public class Parser {
      * @return
      */
     public int indexOf(char[] cc) {
-        boolean found = false;
-        int begin = index;
-        while (begin < str.length() && !found) {
-            for (char aCc : cc)
-                if (str.charAt(begin) == aCc) {
-                    found = true;
-                    break;
-                }
-            begin++;
+        final long low = lowMask(cc);
+        final long high = highMask(cc);
+        final String s = str;
+        final int len = s.length();
+        for (int i = index; i < len; i++) {
+            if (isAnyOf(low, high, cc, s.charAt(i))) {
+                return i;
+            }
         }
-        return (found) ? (begin - 1) : -1;
+        return -1;
     }
 
     /**
@@ -724,9 +814,13 @@ public class Parser {
      * @return
      */
     public Parser skipCRLF() {
-        while (index < str.length() && isCRLF(str.charAt(index))) {
-            index++;
+        final String s = str;
+        final int len = s.length();
+        int i = index;
+        while (i < len && isClass(s.charAt(i), CRLF_CLASS)) {
+            i++;
         }
+        index = i;
         return this;
     }
 
@@ -736,9 +830,13 @@ public class Parser {
      * @return
      */
     public Parser skipWSPCRLF() {
-        while (index < str.length() && isWSPCRLF(str.charAt(index))) {
-            index++;
+        final String s = str;
+        final int len = s.length();
+        int i = index;
+        while (i < len && isClass(s.charAt(i), WSP_CLASS | CRLF_CLASS)) {
+            i++;
         }
+        index = i;
         return this;
     }
 
@@ -749,9 +847,15 @@ public class Parser {
      * @return
      */
     public Parser skipChars(char[] cc) {
-        while (index < str.length() && isAnyOf(cc, nextChar())) {
-            index++;
+        final long low = lowMask(cc);
+        final long high = highMask(cc);
+        final String s = str;
+        final int len = s.length();
+        int i = index;
+        while (i < len && isAnyOf(low, high, cc, s.charAt(i))) {
+            i++;
         }
+        index = i;
         return this;
     }
 
@@ -808,12 +912,16 @@ public class Parser {
      * @return
      */
     public String getWord(char[] separators) {
+        final long low = lowMask(separators);
+        final long high = highMask(separators);
+        final String s = str;
+        final int len = s.length();
         int begin = index;
-        while (begin < str.length() && isAnyOf(separators, str.charAt(begin))) {
+        while (begin < len && isAnyOf(low, high, separators, s.charAt(begin))) {
             begin++;
         }
         int end = begin;
-        while (end < str.length() && !isAnyOf(separators, str.charAt(end))) {
+        while (end < len && !isAnyOf(low, high, separators, s.charAt(end))) {
             end++;
         }
         index = end;
@@ -845,8 +953,10 @@ public class Parser {
      * @return
      */
     public String getLine() {
+        final String s = str;
+        final int len = s.length();
         int end = index;
-        while (end < str.length() && !isCRLF(str.charAt(end))) {
+        while (end < len && !isClass(s.charAt(end), CRLF_CLASS)) {
             end++;
         }
         String line = str.substring(index, end);
@@ -926,13 +1036,15 @@ public class Parser {
      * @return
      */
     public String getWordSkippingQuoted(char[] separators) {
+        final long low = lowMask(separators);
+        final long high = highMask(separators);
         int begin = index;
-        while (begin < str.length() && isAnyOf(separators, str.charAt(begin))) {
+        while (begin < str.length() && isAnyOf(low, high, separators, str.charAt(begin))) {
             begin++;
         }
         boolean inside_quoted_string = false;
         int end = begin;
-        while (end < str.length() && (!isAnyOf(separators, str.charAt(end)) || inside_quoted_string)) {
+        while (end < str.length() && (!isAnyOf(low, high, separators, str.charAt(end)) || inside_quoted_string)) {
             if (str.charAt(end) == '"') {
                 inside_quoted_string = !inside_quoted_string;
             }
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2005 Luca Veltri - University of Parma - Italy
+ *
+ *  This file is part of MjSip (http://www.mjsip.org)
+ *
+ *  MjSip is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  MjSip is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with MjSip; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *  Author(s):
+ *  Luca Veltri (luca.veltri@unipr.it)
+ *
+ *  Modified:
+ *  Benhur Langoni (bhlangonijr@gmail.com)
+ *  Thiago Camargo (barata7@gmail.com)
+ */
+
+package org.zoolu.tools;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Index of elements by the time they were last stamped, grouped in buckets of <i>resolution</i> milliseconds.
+ * <p/> Looking for elements stamped before a given time only touches the buckets that are due:
+ * buckets entirely before that time are taken out of the index as a whole, and only the elements of the
+ * bucket holding that time have to be checked against their own timestamp.
+ */
+class TimeBucketIndex<E> {
+
+    private final long resolution;
+    private final ConcurrentSkipListMap<Long, Set<E>> buckets = new ConcurrentSkipListMap<Long, Set<E>>();
+
+    TimeBucketIndex(final long resolution) {
+        if (resolution <= 0) {
+            throw new IllegalArgumentException("Invalid resolution: " + resolution);
+        }
+        this.resolution = resolution;
+    }
+
+    long getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Indexes an element stamped at <i>time</i>, replacing its previous stamp.
+     *
+     * @param element
+     * @param time
+     * @param previous the previous stamp of the element, or null if it was not indexed
+     */
+    void add(final E element, final long time, final Long previous) {
+        final long id = time / resolution;
+        for (;;) {
+            Set<E> bucket = buckets.get(id);
+            if (bucket == null) {
+                bucket = Collections.newSetFromMap(new ConcurrentHashMap<E, Boolean>());
+                final Set<E> raced = buckets.putIfAbsent(id, bucket);
+                if (raced != null) {
+                    bucket = raced;
+                }
+            }
+            bucket.add(element);
+            // a purge may have taken the bucket out meanwhile
+            if (buckets.get(id) == bucket) {
+                break;
+            }
+        }
+        if (previous != null && previous / resolution != id) {
+            remove(element, previous);
+        }
+    }
+
+    void remove(final Object element, final long time) {
+        final Set<E> bucket = buckets.get(time / resolution);
+        if (bucket != null) {
+            bucket.remove(element);
+        }
+    }
+
+    /**
+     * Gets the elements that may be stamped before <i>cutoff</i>. Elements of buckets entirely before
+     * <i>cutoff</i> are unindexed; the ones of the bucket holding <i>cutoff</i> stay indexed, and the
+     * caller has to check their stamp. Elements stamped again since they were indexed may be returned too.
+     *
+     * @param cutoff
+     * @return
+     */
+    List<E> due(final long cutoff) {
+        final List<E> elements = new ArrayList<E>();
+        final long limit = cutoff / resolution;
+        Map.Entry<Long, Set<E>> e;
+        while ((e = buckets.firstEntry()) != null && e.getKey() < limit) {
+            if (buckets.remove(e.getKey(), e.getValue())) {
+                elements.addAll(e.getValue());
+            }
+        }
+        final Set<E> boundary = buckets.get(limit);
+        if (boundary != null) {
+            elements.addAll(boundary);
+        }
+        return elements;
+    }
+
+    void clear() {
+        buckets.clear();
+    }
+
+    /**
+     * @return number of buckets currently indexed
+     */
+    int getBucketCount() {
+        return buckets.size();
+    }
+}
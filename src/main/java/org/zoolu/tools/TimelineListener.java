@@ -0,0 +1,24 @@
+/* *
+ *  @author Thiago Camargo (barata7@gmail.com)
+ *  @author Benhur Langoni (bhlangonijr@gmail.com)
+ *
+ */
+
+package org.zoolu.tools;
+
+/**
+ * Notified of the entries a ConcurrentTimelineHashMap drops by itself, so that their owner can release
+ * the resources behind them. Entries removed explicitly are not notified.
+ */
+public interface TimelineListener<K, V> {
+
+    /**
+     * The entry outlived the time to live (or the idle time, with access expiry).
+     */
+    public void onExpiration(K key, V value);
+
+    /**
+     * The entry was evicted, as least recently used, to stay within capacity.
+     */
+    public void onEviction(K key, V value);
+}
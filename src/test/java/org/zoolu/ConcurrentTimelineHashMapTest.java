@@ -2,9 +2,13 @@ package org.zoolu;
 
 import junit.framework.TestCase;
 import org.zoolu.tools.ConcurrentTimelineHashMap;
+import org.zoolu.tools.TimelineListener;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
 
 /**
@@ -57,22 +61,16 @@ public class ConcurrentTimelineHashMapTest extends TestCase {
             }));
         }
 
-        int c = 0;
-
-        while (c < 10) {
-            for (Future f: futures) {
-                try {
-                    System.out.println("Task time="+f.get(100,TimeUnit.MILLISECONDS));
-                    c++;
-                } catch (TimeoutException e) {}
-            }
+        for (Future f: futures) {
+            System.out.println("Task time="+f.get());
         }
 
         assertTrue(map.size()==10*6000);
 
         map.setTtl(100);
 
-        Thread.sleep(2000);
+        // a purge right after the ttl change leaves the newest entries to the next one
+        Thread.sleep(map.getPurgeDelay() + 500);
 
         assertTrue(map.size()==0);
 
@@ -96,6 +94,117 @@ public class ConcurrentTimelineHashMapTest extends TestCase {
 
     }
 
+    public void testCleanUpExpiredBuckets() throws InterruptedException {
+        ConcurrentTimelineHashMap<String, String> map = new ConcurrentTimelineHashMap<String, String>(1000, 60000);
+
+        map.put("old", "old value");
+        map.put("refreshed", "first");
+        map.put("removed", "removed");
+        Thread.sleep(1200);
+        map.put("refreshed", "second");
+        map.put("new", "new value");
+        map.remove("removed");
+
+        List<String> expired = map.cleanUpExpired(600);
+        assertEquals(1, expired.size());
+        assertEquals("old value", expired.get(0));
+        assertFalse(map.containsKey("old"));
+        assertEquals("second", map.get("refreshed"));
+        assertEquals("new value", map.get("new"));
+
+        assertTrue(map.cleanUpExpired(600).isEmpty());
+        assertEquals(2, map.cleanUpExpired(-1).size());
+        assertTrue(map.isEmpty());
+    }
+
+    public void testListenersAndRefresh() throws InterruptedException {
+        ConcurrentTimelineHashMap<String, String> map = new ConcurrentTimelineHashMap<String, String>(3, 60000);
+        final List<String> expired = new ArrayList<String>();
+        final List<String> evicted = new ArrayList<String>();
+        map.setListener(new TimelineListener<String, String>() {
+            public void onExpiration(String key, String value) {
+                expired.add(key);
+            }
+
+            public void onEviction(String key, String value) {
+                evicted.add(key);
+            }
+        });
+
+        Map<String, String> m = new HashMap<String, String>();
+        m.put("a", "a");
+        m.put("b", "b");
+        map.putAll(m);
+        map.put("c", "c");
+        map.put("d", "d");
+        assertEquals(3, map.size());
+        assertEquals(1, evicted.size());
+
+        Thread.sleep(1200);
+        map.replace("c", "c2");
+        assertTrue(map.replace("d", "d", "d2"));
+        assertFalse(map.replace("d", "d", "d3"));
+
+        List<String> values = map.cleanUpExpired(600);
+        assertEquals(1, values.size());
+        assertEquals(1, expired.size());
+        assertEquals(values.get(0), expired.get(0));
+        assertEquals("c2", map.get("c"));
+        assertEquals("d2", map.get("d"));
+        assertEquals(2, map.size());
+    }
+
+    public void testAccessExpiry() throws InterruptedException {
+        ConcurrentTimelineHashMap<String, String> map = new ConcurrentTimelineHashMap<String, String>(1000, 60000);
+        map.setAccessExpiry(true);
+
+        map.put("idle", "idle");
+        map.put("used", "used");
+        Thread.sleep(1200);
+        assertEquals("used", map.get("used"));
 
+        assertEquals(Collections.singletonList("idle"), map.cleanUpExpired(600));
+        assertEquals("used", map.get("used"));
+        assertEquals(1, map.entrySet().size());
+    }
+
+    public void testSharedScheduler() throws InterruptedException {
+        final int threads = Thread.activeCount();
+        final List<ConcurrentTimelineHashMap<String, String>> maps = new ArrayList<ConcurrentTimelineHashMap<String, String>>();
+        for (int i = 0; i < 50; i++) {
+            maps.add(new ConcurrentTimelineHashMap<String, String>(100, 100, 100));
+        }
+        assertTrue(Thread.activeCount() <= threads + 1);
+
+        for (ConcurrentTimelineHashMap<String, String> m : maps) {
+            m.put("key", "value");
+        }
+        Thread.sleep(500);
+        for (ConcurrentTimelineHashMap<String, String> m : maps) {
+            assertTrue(m.isEmpty());
+            m.close();
+        }
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        ConcurrentTimelineHashMap<String, String> own = new ConcurrentTimelineHashMap<String, String>(100, 100, 100, scheduler);
+        own.close();
+        own.put("key", "value");
+        Thread.sleep(300);
+        assertEquals("value", own.get("key"));
+        scheduler.shutdown();
+    }
+
+    public void testAmortizedCleanUp() throws InterruptedException {
+        ConcurrentTimelineHashMap<String, String> map = new ConcurrentTimelineHashMap<String, String>(1000, 100, 60000);
+        map.setPurgeCounterLimit(10);
+
+        map.put("old", "old");
+        Thread.sleep(300);
+        for (int i = 0; i < 10; i++) {
+            map.get("missing");
+        }
+        assertFalse(map.containsKey("old"));
+        map.close();
+    }
 
 }
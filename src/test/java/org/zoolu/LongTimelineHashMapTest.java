@@ -0,0 +1,113 @@
+package org.zoolu;
+
+import junit.framework.TestCase;
+import org.zoolu.tools.ConcurrentTimelineHashMap;
+import org.zoolu.tools.LongTimelineHashMap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks LongTimelineHashMap against a HashMap, and compares its per entry heap
+ * footprint with the one of ConcurrentTimelineHashMap.
+ */
+public class LongTimelineHashMapTest extends TestCase {
+
+    final static int ENTRIES = 100000;
+
+    public void testAgainstHashMap() {
+        final LongTimelineHashMap<String> map = new LongTimelineHashMap<String>(16, 60000, 0);
+        final Map<Long, String> reference = new HashMap<Long, String>();
+        final Random random = new Random(42);
+
+        for (int i = 0; i < 200000; i++) {
+            final long key = random.nextInt(5000);
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertEquals(reference.put(key, "v" + i), map.put(key, "v" + i));
+                    break;
+                case 1:
+                    assertEquals(reference.remove(key), map.remove(key));
+                    break;
+                default:
+                    assertEquals(reference.get(key), map.get(key));
+            }
+        }
+        assertEquals(reference.size(), map.size());
+        for (Map.Entry<Long, String> e : reference.entrySet()) {
+            assertEquals(e.getValue(), map.get(e.getKey()));
+        }
+    }
+
+    public void testExpiration() throws InterruptedException {
+        final LongTimelineHashMap<String> map = new LongTimelineHashMap<String>(16, 60000, 0);
+
+        map.put("a84b4c76e66710@pc33.atlanta.com", "old");
+        map.put("z9hG4bK776asdhds", "refreshed");
+        Thread.sleep(1200);
+        map.put("z9hG4bK776asdhds", "second");
+        assertEquals("old", map.putIfAbsent("a84b4c76e66710@pc33.atlanta.com", "ignored"));
+
+        assertEquals(1, map.cleanUpExpired(600).size());
+        assertFalse(map.containsKey("a84b4c76e66710@pc33.atlanta.com"));
+        assertEquals("second", map.get("z9hG4bK776asdhds"));
+        assertEquals(1, map.size());
+        map.close();
+    }
+
+    public void testFootprint() {
+        final String value = "channel";
+
+        final long timelineBytes = footprint(new Runnable() {
+            public void run() {
+                final ConcurrentTimelineHashMap<String, String> map = new ConcurrentTimelineHashMap<String, String>(ENTRIES, 60000, 60000);
+                for (int i = 0; i < ENTRIES; i++) {
+                    map.put("z9hG4bK" + i, value);
+                }
+                retained = map;
+                map.close();
+            }
+        });
+        System.out.println("Time ConcurrentTimelineHashMap " + fillTime + " bytes/entry " + timelineBytes / ENTRIES);
+
+        final long leanBytes = footprint(new Runnable() {
+            public void run() {
+                final LongTimelineHashMap<String> map = new LongTimelineHashMap<String>(ENTRIES, 60000, 60000);
+                for (int i = 0; i < ENTRIES; i++) {
+                    map.put("z9hG4bK" + i, value);
+                }
+                retained = map;
+                map.close();
+            }
+        });
+        System.out.println("Time LongTimelineHashMap " + fillTime + " bytes/entry " + leanBytes / ENTRIES);
+    }
+
+    private Object retained;
+    private long fillTime;
+
+    private long footprint(final Runnable fill) {
+        retained = null;
+        final long before = usedMemory();
+        final long init = System.currentTimeMillis();
+        fill.run();
+        fillTime = System.currentTimeMillis() - init;
+        final long after = usedMemory();
+        retained = null;
+        return after - before;
+    }
+
+    private static long usedMemory() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -2,6 +2,7 @@ package org.zoolu;
 
 import junit.framework.TestCase;
 import org.zoolu.sip.message.JIDFactory;
+import org.zoolu.sip.message.JIDFormatter;
 
 /**
  * Created with IntelliJ IDEA.
@@ -46,4 +47,42 @@ public class TestJIDFactory extends TestCase {
 
     }
 
+    public void testFilteredJIDHits() {
+
+        final JIDFactory factory = new JIDFactory(1000);
+        factory.addJIDPrepFilter(new JIDFormatter() {
+            public String prepForJID(String str) {
+                return str.toLowerCase();
+            }
+        });
+
+        assertEquals("user@xmpp.org/test", factory.getJID("User@XMPP.org/test"));
+        assertEquals("user@xmpp.org/test", factory.getJID("User@XMPP.org/test"));
+        assertEquals(1, factory.getMisses());
+        assertEquals(1, factory.getHits());
+        assertTrue(factory.isCached("User@XMPP.org/test"));
+
+        factory.addJIDPrepFilter(new JIDFormatter() {
+            public String prepForJID(String str) {
+                return str.replace("/test", "");
+            }
+        });
+        assertFalse(factory.isCached("User@XMPP.org/test"));
+        assertEquals("user@xmpp.org", factory.getJID("User@XMPP.org/test"));
+    }
+
+    public void testWeightedCapacity() {
+
+        final JIDFactory factory = new JIDFactory(100);
+        for (int i = 0; i < 100; i++) {
+            factory.getJID("user" + i + "@xmpp.org");
+        }
+
+        assertTrue(factory.getWeightedSize() <= 100);
+        assertTrue(factory.getEvictions() > 0);
+        assertEquals(100, factory.getMisses());
+        assertTrue(factory.isCached("user99@xmpp.org"));
+        assertFalse(factory.isCached("user0@xmpp.org"));
+    }
+
 }
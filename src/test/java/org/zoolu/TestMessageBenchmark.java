@@ -0,0 +1,153 @@
+package org.zoolu;
+
+import junit.framework.TestCase;
+import org.zoolu.sip.header.Header;
+import org.zoolu.sip.header.SipHeaders;
+import org.zoolu.sip.message.BaseMessageFactory;
+import org.zoolu.sip.message.Message;
+import org.zoolu.sip.message.ResponseTemplate;
+import org.zoolu.sip.provider.SipParser;
+import org.zoolu.tools.Parser;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compares the header operations of a proxy hop done by splicing the message text, as the
+ * String backed BaseMessage used to, with the same operations on the parsed Message.
+ */
+public class TestMessageBenchmark extends TestCase {
+
+    final static int ROUNDS = 20000;
+
+    final String invite = "INVITE sip:bob@biloxi.com SIP/2.0\r\n" +
+            "Via: SIP/2.0/UDP pc33.atlanta.com;branch=z9hG4bK776asdhds\r\n" +
+            "Max-Forwards: 70\r\n" +
+            "To: Bob <sip:bob@biloxi.com>\r\n" +
+            "From: Alice <sip:alice@atlanta.com>;tag=1928301774\r\n" +
+            "Call-ID: a84b4c76e66710@pc33.atlanta.com\r\n" +
+            "CSeq: 314159 INVITE\r\n" +
+            "Contact: <sip:alice@pc33.atlanta.com>\r\n" +
+            "User-Agent: Softphone Beta1.5\r\n" +
+            "Content-Type: application/sdp\r\n" +
+            "Content-Length: 0\r\n" +
+            "\r\n";
+
+    final Header via = new Header(SipHeaders.Via, "SIP/2.0/UDP proxy.biloxi.com;branch=z9hG4bK4b43c2ff8.1");
+
+    private String textHop(String message) {
+        // add Via on top
+        SipParser par = new SipParser(message);
+        par.goToNextHeader();
+        int i = par.getPos();
+        message = message.substring(0, i) + via.toString() + message.substring(i);
+        // remove User-Agent
+        par = new SipParser(message);
+        par.goTo(new String[]{'\n' + SipHeaders.User_Agent});
+        par.skipChar();
+        String head = message.substring(0, par.getPos());
+        par.goToNextHeader();
+        message = head + message.substring(par.getPos());
+        // read a few headers
+        new SipParser(message).getHeader(SipHeaders.CallID);
+        new SipParser(message).getHeader(SipHeaders.CSeq);
+        new SipParser(message).getHeader(SipHeaders.From);
+        return message;
+    }
+
+    private Message structuredHop(Message message) {
+        message.addHeader(via, true);
+        message.removeHeader(SipHeaders.User_Agent);
+        message.getHeader(SipHeaders.CallID);
+        message.getHeader(SipHeaders.CSeq);
+        message.getHeader(SipHeaders.From);
+        return message;
+    }
+
+    public void testHeaderOperations() {
+
+        final Message parsed = new Message(invite);
+
+        assertEquals(textHop(invite).trim(), structuredHop((Message) parsed.clone()).toString().trim());
+
+        long init = System.currentTimeMillis();
+        for (int i = 0; i < ROUNDS; i++) {
+            textHop(invite);
+        }
+        System.out.println("Time text " + (System.currentTimeMillis() - init));
+
+        init = System.currentTimeMillis();
+        for (int i = 0; i < ROUNDS; i++) {
+            structuredHop((Message) parsed.clone()).toString();
+        }
+        System.out.println("Time structured " + (System.currentTimeMillis() - init));
+    }
+
+    public void testResponseTemplate() throws Exception {
+
+        final Message parsed = new Message(ByteBuffer.wrap(invite.getBytes("UTF-8")));
+        final ResponseTemplate trying = BaseMessageFactory.getTryingTemplate();
+        final ByteBuffer buffer = ByteBuffer.allocate(1450);
+
+        long init = System.currentTimeMillis();
+        for (int i = 0; i < ROUNDS; i++) {
+            final Message resp = BaseMessageFactory.createResponse(parsed, 100, "Trying", null, null, null, null);
+            buffer.clear();
+            resp.encodeTo(buffer);
+        }
+        System.out.println("Time createResponse " + (System.currentTimeMillis() - init));
+
+        init = System.currentTimeMillis();
+        for (int i = 0; i < ROUNDS; i++) {
+            buffer.clear();
+            trying.encodeTo(parsed, null, buffer);
+        }
+        System.out.println("Time template " + (System.currentTimeMillis() - init));
+    }
+
+    /**
+     * Splits the message into words the way Parser.getWord() used to, scanning the separators for every char.
+     */
+    private int scanTokens(String message) {
+        int words = 0;
+        int i = 0;
+        while (i < message.length()) {
+            while (i < message.length() && Parser.isAnyOf(SipParser.param_separators, message.charAt(i))) i++;
+            int begin = i;
+            while (i < message.length() && !Parser.isAnyOf(SipParser.param_separators, message.charAt(i))) i++;
+            if (message.substring(begin, i).length() > 0) {
+                words++;
+            }
+            while (i < message.length() && !Parser.isAnyOf(SipParser.SEPARATOR, message.charAt(i))) i++;
+        }
+        return words;
+    }
+
+    private int tableTokens(String message) {
+        int words = 0;
+        final SipParser par = new SipParser(message, 0);
+        while (par.hasMore()) {
+            if (par.getWord(SipParser.param_separators).length() > 0) {
+                words++;
+            }
+            par.setPos(par.indexOfSeparator());
+        }
+        return words;
+    }
+
+    public void testHeaderTokenization() {
+
+        assertEquals(scanTokens(invite), tableTokens(invite));
+
+        long init = System.currentTimeMillis();
+        for (int i = 0; i < ROUNDS; i++) {
+            scanTokens(invite);
+        }
+        System.out.println("Time scan tokenization " + (System.currentTimeMillis() - init));
+
+        init = System.currentTimeMillis();
+        for (int i = 0; i < ROUNDS; i++) {
+            tableTokens(invite);
+        }
+        System.out.println("Time table tokenization " + (System.currentTimeMillis() - init));
+    }
+}
@@ -1,7 +1,20 @@
 package org.zoolu;
 
 import junit.framework.TestCase;
+import org.zoolu.sip.header.CallIdHeader;
+import org.zoolu.sip.header.Header;
+import org.zoolu.sip.header.SipHeaders;
+import org.zoolu.sip.header.ToHeader;
+import org.zoolu.sip.header.ViaHeader;
+import org.zoolu.sip.message.BaseMessageFactory;
 import org.zoolu.sip.message.Message;
+import org.zoolu.sip.message.Participants;
+import org.zoolu.sip.message.ResponseTemplate;
+import org.zoolu.sip.provider.SipParser;
+import org.zoolu.sip.provider.SipStack;
+import org.zoolu.tools.Parser;
+
+import java.nio.ByteBuffer;
 
 /**
  * Created by IntelliJ IDEA.
@@ -54,6 +67,273 @@ public class TestParser extends TestCase {
 
     }
 
+    public void testByteBufferParsing() throws Exception {
+
+        final Message s = new Message(sipString);
+        final Message b = new Message(ByteBuffer.wrap(sipString.getBytes()));
+
+        assertEquals(s.toString(), b.toString());
+        assertEquals(200, b.getStatusLine().getCode());
+        assertEquals("7942901908306987", b.getCallIdHeader().getCallId());
+        assertEquals("z9hG4bK7942901908306987", b.getViaHeader().getBranch());
+        assertEquals(s.getBody(), b.getBody());
+        assertEquals(s.getParticipants().getInitiator(), b.getParticipants().getInitiator());
+
+        final String folded = "INVITE sip:bob@biloxi.com SIP/2.0\r\n" +
+                "Via: SIP/2.0/UDP pc33.atlanta.com\r\n ;branch=z9hG4bK776asdhds\r\n" +
+                "i: a84b4c76e66710\r\n" +
+                "l: 0\r\n" +
+                "\r\n";
+        final Message f = new Message(ByteBuffer.wrap(folded.getBytes()));
+        assertTrue(f.isInvite());
+        assertEquals(new Message(folded).toString(), f.toString());
+        assertEquals("a84b4c76e66710", f.getCallIdHeader().getCallId());
+    }
+
+    public void testHeaderIndex() {
+
+        final Message m = new Message("INVITE sip:bob@biloxi.com SIP/2.0\r\n" +
+                "v: SIP/2.0/UDP first.atlanta.com;branch=z9hG4bK1\r\n" +
+                "Via: SIP/2.0/UDP second.atlanta.com;branch=z9hG4bK2\r\n" +
+                "f: <sip:alice@atlanta.com>;tag=1928301774\r\n" +
+                "i: a84b4c76e66710\r\n" +
+                "l: 0\r\n" +
+                "\r\n");
+
+        assertEquals(2, m.getHeaders(SipHeaders.Via).size());
+        assertEquals(2, m.getHeaders(SipHeaders.Via_short).size());
+        assertEquals("z9hG4bK1", m.getViaHeader().getBranch());
+        assertTrue(m.hasHeader("call-id"));
+        assertSame(m.getHeader(SipHeaders.From), m.getHeader(SipHeaders.From_short));
+
+        m.addHeaderAfter(new Header(SipHeaders.Max_Forwards, "70"), SipHeaders.Via);
+        m.removeHeader(SipHeaders.Via, false);
+        m.setHeader(new Header(SipHeaders.CallID, "b84b4c76e66710"));
+        assertEquals(1, m.getHeaders(SipHeaders.Via).size());
+        assertEquals("b84b4c76e66710", m.getCallIdHeader().getCallId());
+
+        final String s = m.toString();
+        assertTrue(s.indexOf("first.atlanta.com") < s.indexOf(SipHeaders.Max_Forwards));
+        assertTrue(s.indexOf(SipHeaders.Max_Forwards) < s.indexOf("tag=1928301774"));
+        assertTrue(s.indexOf("tag=1928301774") < s.indexOf("b84b4c76e66710"));
+        assertEquals(-1, s.indexOf("second.atlanta.com"));
+
+        m.removeAllHeaders(SipHeaders.Via);
+        assertFalse(m.hasHeader(SipHeaders.Via_short));
+        assertEquals(0, m.getHeaders(SipHeaders.Via).size());
+    }
+
+    public void testTypedHeaderCache() {
+
+        final Message m = new Message(sipString);
+
+        assertNotSame(m.getFromHeader(), m.getFromHeader());
+        assertEquals(m.getViaHeader().getValue(), m.getViaHeader().getValue());
+        assertEquals("as3efe9f43", m.getToHeader().getTag());
+
+        // every caller gets its own copy
+        final ToHeader to = m.getToHeader();
+        final ToHeader held = m.getToHeader();
+        to.setParameter("tag", "changed");
+        assertEquals("changed", to.getTag());
+        assertEquals("as3efe9f43", held.getTag());
+        assertEquals("as3efe9f43", m.getToHeader().getTag());
+        held.removeParameter("tag");
+        assertFalse(held.hasParameter("tag"));
+        assertEquals("as3efe9f43", m.getToHeader().getTag());
+        assertEquals(m.getHeader(SipHeaders.To).getValue(), m.getToHeader().getValue());
+
+        final CallIdHeader callId = m.getCallIdHeader();
+        m.setHeader(new Header(SipHeaders.CallID, "new-call-id"));
+        assertNotSame(callId, m.getCallIdHeader());
+        assertEquals("new-call-id", m.getCallIdHeader().getCallId());
+
+        m.removeHeader(SipHeaders.CallID);
+        assertNull(m.getCallIdHeader());
+    }
+
+    public void testHeaderParameters() {
+
+        final ViaHeader via = new ViaHeader("SIP/2.0/UDP 10.0.0.1:5060; branch=z9hG4bK776;rport;received=1.2.3.4");
+        assertEquals("z9hG4bK776", via.getBranch());
+        assertTrue(via.hasRport());
+        assertEquals(-1, via.getRport());
+        assertEquals("1.2.3.4", via.getReceived());
+        assertEquals(3, via.getParameterNames().size());
+
+        via.setRport(5062);
+        via.setParameter("alias", null);
+        via.removeParameter("received");
+        assertEquals(5062, via.getRport());
+        assertFalse(via.hasReceived());
+        assertEquals("10.0.0.1", via.getHost());
+        assertEquals("SIP/2.0/UDP 10.0.0.1:5060; branch=z9hG4bK776;rport=5062;alias", via.getValue());
+
+        final ToHeader to = new ToHeader(new Header(SipHeaders.To, "\"a;b\" <sip:bob@biloxi.com;transport=udp>;tag=as3e"));
+        assertEquals("as3e", to.getTag());
+        assertNull(to.getParameter("transport"));
+        to.setParameter("tag", "x1");
+        assertEquals("To: \"a;b\" <sip:bob@biloxi.com;transport=udp>;tag=x1\r\n", to.toString());
+        to.removeParameters();
+        assertFalse(to.hasTag());
+        assertEquals("sip:bob@biloxi.com;transport=udp", to.getNameAddress().getAddress().toString());
+    }
+
+    public void testEncodeTo() throws Exception {
+
+        final Message s = new Message(sipString);
+        final Message b = new Message(ByteBuffer.wrap(sipString.getBytes("UTF-8")));
+        b.getToHeader().setParameter("tag", "\u00e9t\u00e9");
+        b.setHeader(b.getToHeader());
+
+        for (final Message m : new Message[]{s, b}) {
+            // encode first, so that a body parsed from bytes is still raw
+            final ByteBuffer buffer = ByteBuffer.allocate(m.encodedLength());
+            m.encodeTo(buffer);
+            assertFalse(buffer.hasRemaining());
+            final byte[] expected = m.toString().getBytes("UTF-8");
+            assertTrue(java.util.Arrays.equals(expected, buffer.array()));
+        }
+
+        final Message request = new Message("INVITE sip:bob@biloxi.com SIP/2.0\r\nl: 0\r\n\r\n");
+        final ByteBuffer buffer = ByteBuffer.allocate(request.encodedLength());
+        request.encodeTo(buffer);
+        assertEquals(request.toString(), new String(buffer.array(), "UTF-8"));
+    }
+
+    public void testClone() throws Exception {
+
+        final Message m = new Message(sipString);
+        final String original = m.toString();
+        final Participants p = m.getParticipants();
+        final ViaHeader held = m.getViaHeader();
+        final Message c = (Message) m.clone();
+
+        // typed headers of the copy are not the ones held from the original
+        c.getViaHeader().setBranch("z9hG4bKclone");
+        assertNotSame(held, c.getViaHeader());
+        assertEquals("z9hG4bK7942901908306987", held.getBranch());
+        assertEquals("z9hG4bK7942901908306987", c.getViaHeader().getBranch());
+
+        assertSame(p, c.getParticipants());
+        assertEquals(original, c.toString());
+
+        final ViaHeader via = c.getViaHeader();
+        via.setBranch("z9hG4bKclone");
+        c.removeViaHeader();
+        c.addViaHeader(via);
+        c.removeHeader(SipHeaders.User_Agent);
+
+        assertEquals("z9hG4bKclone", c.getViaHeader().getBranch());
+        assertFalse(c.hasHeader(SipHeaders.User_Agent));
+        assertEquals("z9hG4bK7942901908306987", m.getViaHeader().getBranch());
+        assertTrue(m.hasHeader(SipHeaders.User_Agent));
+        assertEquals(original, m.toString());
+
+        m.setHeader(new Header(SipHeaders.Subject, "original only"));
+        assertFalse(c.hasHeader(SipHeaders.Subject));
+    }
+
+    public void testLazyParticipants() throws Exception {
+
+        final long before = Participants.getComputationCount();
+        final Message m = new Message(sipString);
+        assertEquals(before, Participants.getComputationCount());
+
+        final Participants p = m.getParticipants();
+        assertSame(p, m.getParticipants());
+        assertEquals(before + 1, Participants.getComputationCount());
+
+        SipStack.eager_participants = true;
+        try {
+            final Message e = new Message(sipString);
+            assertEquals(before + 2, Participants.getComputationCount());
+            assertEquals(p.getInitiator(), e.getParticipants().getInitiator());
+            assertEquals(before + 2, Participants.getComputationCount());
+        } finally {
+            SipStack.eager_participants = false;
+        }
+    }
+
+    public void testResponseTemplate() throws Exception {
+
+        final String request = "INVITE sip:bob@biloxi.com SIP/2.0\r\n" +
+                "Via: SIP/2.0/UDP proxy.biloxi.com;branch=z9hG4bK4b43c2ff8.1\r\n" +
+                "Via: SIP/2.0/UDP pc33.atlanta.com;branch=z9hG4bK776asdhds\r\n" +
+                "Record-Route: <sip:proxy.biloxi.com;lr>\r\n" +
+                "Max-Forwards: 69\r\n" +
+                "To: Bob <sip:bob@biloxi.com>\r\n" +
+                "From: Alice <sip:alice@atlanta.com>;tag=1928301774\r\n" +
+                "Call-ID: a84b4c76e66710@pc33.atlanta.com\r\n" +
+                "CSeq: 314159 INVITE\r\n" +
+                "Content-Length: 0\r\n" +
+                "\r\n";
+
+        final ResponseTemplate trying = BaseMessageFactory.getTryingTemplate();
+        assertSame(trying, BaseMessageFactory.getTryingTemplate());
+        assertResponse(BaseMessageFactory.createResponse(new Message(request), 100, "Trying", null, null, null, null),
+                trying.encode(new Message(ByteBuffer.wrap(request.getBytes("UTF-8"))), null));
+
+        final ResponseTemplate ringing = BaseMessageFactory.createResponseTemplate(180, "Ringing");
+        assertResponse(BaseMessageFactory.createResponse(new Message(request), 180, "Ringing", "as3efe9f43", null, null, null),
+                ringing.encode(new Message(request), "as3efe9f43"));
+
+        final Message tagged = new Message(request.replace("To: Bob <sip:bob@biloxi.com>", "To: Bob <sip:bob@biloxi.com>;tag=old"));
+        final ByteBuffer retagged = ringing.encode(tagged, "as3efe9f43");
+        assertResponse(BaseMessageFactory.createResponse(tagged, 180, "Ringing", "as3efe9f43", null, null, null), retagged);
+
+        final Message options = new Message(request.replace("INVITE", "OPTIONS"));
+        final ByteBuffer ok = BaseMessageFactory.getOptionsTemplate().encode(options, "as3efe9f43");
+        final Message expected = BaseMessageFactory.createResponse(options, 200, "OK", "as3efe9f43", null, null, null);
+        expected.removeBody();
+        expected.addHeader(new Header(SipHeaders.Allow, "INVITE, ACK, CANCEL, BYE, INFO, OPTIONS, REGISTER, UPDATE, SUBSCRIBE, NOTIFY, MESSAGE, REFER, PUBLISH"), false);
+        expected.addHeader(new Header(SipHeaders.Accept, "application/sdp"), false);
+        expected.setBody(null);
+        assertResponse(expected, ok);
+
+        final Header challenge = new Header(SipHeaders.WWW_Authenticate, "Digest realm=\"biloxi.com\", nonce=\"dcd98b7102dd2f0e\"");
+        final Message unauthorized = new Message(new String(BaseMessageFactory.getUnauthorizedTemplate().encode(new Message(request), null, challenge).array(), "UTF-8"));
+        assertEquals(401, unauthorized.getStatusLine().getCode());
+        assertEquals(challenge.getValue(), unauthorized.getHeader(SipHeaders.WWW_Authenticate).getValue());
+        assertFalse(unauthorized.hasRecordRouteHeader());
+
+        final String serverInfo = SipStack.serverInfo;
+        SipStack.serverInfo = "template-test";
+        try {
+            assertNotSame(trying, BaseMessageFactory.getTryingTemplate());
+            assertTrue(new String(BaseMessageFactory.getTryingTemplate().encode(new Message(request), null).array(), "UTF-8").contains("Server: template-test\r\n"));
+        } finally {
+            SipStack.serverInfo = serverInfo;
+        }
+    }
+
+    private void assertResponse(final Message expected, final ByteBuffer actual) throws Exception {
+        final ByteBuffer buffer = ByteBuffer.allocate(expected.encodedLength());
+        expected.encodeTo(buffer);
+        assertEquals(new String(buffer.array(), "UTF-8"), new String(actual.array(), 0, actual.limit(), "UTF-8"));
+        assertEquals(buffer.capacity(), actual.capacity());
+    }
+
+    public void testCharClasses() {
+
+        for (char c = 0; c < 0xffff; c++) {
+            assertEquals(Parser.isAnyOf(SipParser.MARK, c), SipParser.isMark(c));
+            assertEquals(Parser.isAnyOf(SipParser.SEPARATOR, c), SipParser.isSeparator(c));
+            assertEquals(Parser.isAnyOf(Parser.WSPCRLF, c), Parser.isWSPCRLF(c));
+            assertEquals(Parser.isAnyOf(Parser.CRLF, c), Parser.isCRLF(c));
+            assertEquals(Parser.isAnyOf(Parser.WSP, c), Parser.isWSP(c));
+            assertEquals(Parser.isUpAlpha(c) || Parser.isLowAlpha(c) || Parser.isDigit(c) || Parser.isAnyOf(SipParser.MARK, c), SipParser.isUnreserved(c));
+        }
+
+        final Parser par = new Parser("  sip:bob@biloxi.com;transport=udp \u00e9t\u00e9~x", 0);
+        assertEquals(2, par.skipChars(Parser.WSP).getPos());
+        assertEquals("sip:bob@biloxi.com", par.getWord(new char[]{';', ' '}));
+        assertEquals(par.getWholeString().indexOf('\u00e9'), par.indexOf(new char[]{'\u00e9', '~'}));
+        assertEquals("transport=udp ", par.getWord(new char[]{';', '\u00e9'}));
+        assertEquals("t", par.getWord(new char[]{'\u00e9'}));
+        assertEquals(-1, par.indexOf(new char[]{'#'}));
+    }
+
     public void testCarriage(){
 
         final String a = "\r\n";
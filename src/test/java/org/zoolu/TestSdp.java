@@ -0,0 +1,477 @@
+package org.zoolu;
+
+import junit.framework.TestCase;
+import org.zoolu.sip.message.Message;
+
+import javax.sdp.LazySessionDescription;
+import javax.sdp.MediaDescription;
+import javax.sdp.SdpFactory;
+import javax.sdp.SdpParseException;
+import javax.sdp.SdpRewriter;
+import javax.sdp.SessionDescription;
+import javax.sdp.SessionDescriptionImpl;
+import javax.sdp.fields.ConnectionField;
+import javax.sdp.fields.MediaField;
+import javax.sdp.fields.SDPField;
+import javax.sdp.parser.ParserFactory;
+import javax.sdp.parser.SDPAnnounceParser;
+import javax.sdp.parser.SDPParser;
+import javax.sdp.parser.SDPSessionParser;
+import java.lang.reflect.Constructor;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TestSdp extends TestCase {
+
+    static final String[] BODIES = {
+            // plain audio offer
+            "v=0\r\n" +
+                    "o=alice 2890844526 2890844526 IN IP4 host.atlanta.example.com\r\n" +
+                    "s=-\r\n" +
+                    "c=IN IP4 192.0.2.101\r\n" +
+                    "t=0 0\r\n" +
+                    "m=audio 49172 RTP/AVP 0 8 97 101\r\n" +
+                    "a=rtpmap:0 PCMU/8000\r\n" +
+                    "a=rtpmap:8 PCMA/8000\r\n" +
+                    "a=rtpmap:97 iLBC/8000\r\n" +
+                    "a=rtpmap:101 telephone-event/8000\r\n" +
+                    "a=fmtp:101 0-15\r\n" +
+                    "a=ptime:20\r\n" +
+                    "a=sendrecv\r\n",
+            // audio and video with bandwidth and media level connection
+            "v=0\r\n" +
+                    "o=bob 2808844564 2808844564 IN IP4 host.biloxi.example.com\r\n" +
+                    "s=Talk\r\n" +
+                    "i=A video call\r\n" +
+                    "u=http://www.example.com/seminars/sdp.pdf\r\n" +
+                    "e=bob@biloxi.example.com\r\n" +
+                    "p=+1 617 555-6011\r\n" +
+                    "c=IN IP4 192.0.2.201\r\n" +
+                    "b=AS:384\r\n" +
+                    "t=2873397496 2873404696\r\n" +
+                    "r=604800 3600 0 90000\r\n" +
+                    "m=audio 3456 RTP/AVP 0\r\n" +
+                    "c=IN IP4 192.0.2.202\r\n" +
+                    "a=rtpmap:0 PCMU/8000\r\n" +
+                    "m=video 2232 RTP/AVP 31 34\r\n" +
+                    "b=AS:320\r\n" +
+                    "a=rtpmap:31 H261/90000\r\n" +
+                    "a=rtpmap:34 H263/90000\r\n",
+            // ICE enabled offer
+            "v=0\r\n" +
+                    "o=jdoe 2890844526 2890842807 IN IP4 10.0.1.1\r\n" +
+                    "s=\r\n" +
+                    "c=IN IP4 192.0.2.3\r\n" +
+                    "t=0 0\r\n" +
+                    "a=ice-pwd:asd88fgpdd777uzjYhagZg\r\n" +
+                    "a=ice-ufrag:8hhY\r\n" +
+                    "m=audio 45664 RTP/AVP 0\r\n" +
+                    "b=RS:0\r\n" +
+                    "b=RR:0\r\n" +
+                    "a=rtpmap:0 PCMU/8000\r\n" +
+                    "a=rtcp:45665 IN IP4 192.0.2.3\r\n" +
+                    "a=candidate:1 1 UDP 2130706431 10.0.1.1 8998 typ host\r\n" +
+                    "a=candidate:2 1 UDP 1694498815 192.0.2.3 45664 typ srflx raddr 10.0.1.1 rport 8998\r\n",
+            // jingle gateway style offer, LF only
+            "v=0\n" +
+                    "o=- 1370867236 1370867237 IN IP4 200.184.118.140\n" +
+                    "s=Jingle Call\n" +
+                    "c=IN IP4 200.184.118.140\n" +
+                    "t=0 0\n" +
+                    "m=audio 20000 RTP/AVP 18 0 8 101\n" +
+                    "a=rtpmap:18 G729/8000\n" +
+                    "a=fmtp:18 annexb=no\n" +
+                    "a=rtpmap:0 PCMU/8000\n" +
+                    "a=rtpmap:8 PCMA/8000\n" +
+                    "a=rtpmap:101 telephone-event/8000\n" +
+                    "a=fmtp:101 0-16\n" +
+                    "a=silenceSupp:off - - - -\n" +
+                    "a=sendrecv\n"
+    };
+
+    public void testParseBodies() throws Exception {
+
+        final SdpFactory factory = SdpFactory.getInstance();
+        for (String body : BODIES) {
+            final SessionDescription sd = factory.createSessionDescription(body);
+            assertNotNull(sd.getConnection());
+            assertFalse(sd.getMediaDescriptions(false).isEmpty());
+            // every line comes back through its own parser
+            for (String line : body.split("\r?\n")) {
+                final SDPField field = ParserFactory.createParser(line).parse();
+                assertEquals(line.substring(0, 2), field.getTypeChar() + "=");
+            }
+            // and the encoded description parses to the same encoding
+            assertEquals(sd.toString(), factory.createSessionDescription(sd.toString()).toString());
+        }
+
+        final MediaDescription md = (MediaDescription) factory.createSessionDescription(BODIES[1])
+                .getMediaDescriptions(false).get(1);
+        assertEquals("video", md.getMedia().getMediaType());
+        assertEquals(2232, md.getMedia().getMediaPort());
+    }
+
+    public void testSessionParser() throws Exception {
+
+        for (String body : BODIES) {
+            assertEquals(new SDPAnnounceParser(body).parse().toString(), new SDPSessionParser(body).parse().toString());
+        }
+        final String mixed = "\r\n  " + BODIES[2].replace("\r\nc=", "\rc=").replace("\r\nt=", "\n\rt=")
+                .replace("\r\nm=", "\r\n\r\nm=").replace("s=\r\n", "s=\r\n\tx\r\n");
+        assertEquals(new SDPAnnounceParser(BODIES[2]).parse().toString(), new SDPSessionParser(mixed).parse().toString());
+
+        final SDPSessionParser parser = new SDPSessionParser(BODIES[1].replace("b=AS:320", "b=AS320"));
+        try {
+            parser.parse();
+            fail("A bandwidth without type must be reported");
+        } catch (ParseException e) {
+            assertEquals(16, parser.getErrorLine());
+        }
+    }
+
+    public void testLazySessionDescription() throws Exception {
+
+        final SdpFactory factory = SdpFactory.getInstance();
+        LazySessionDescription sd = factory.createLazySessionDescription(BODIES[1]);
+        assertEquals(2, sd.getMediaCount());
+        assertEquals("192.0.2.202", sd.getConnection(0).getAddress());
+        assertEquals("192.0.2.201", sd.getConnection(1).getAddress());
+        assertEquals("31 H261/90000", sd.getAttribute(1, "rtpmap"));
+        assertNull(sd.getAttribute(1, "ptime"));
+        assertFalse(sd.isMaterialized());
+
+        // relay rewrite: only c= and m= are re-encoded, odd spacing elsewhere survives
+        final String body = BODIES[2].replace("a=rtpmap:0 PCMU/8000", "a=rtpmap:0  PCMU/8000 ");
+        sd = factory.createLazySessionDescription(body);
+        assertEquals("45665 IN IP4 192.0.2.3", sd.getAttribute(0, "rtcp"));
+        sd.getConnection(0).setAddress("203.0.113.7");
+        sd.getMedia(0).setMediaPort(30000);
+        final String rewritten = body.replace("c=IN IP4 192.0.2.3", "c=IN IP4 203.0.113.7")
+                .replace("m=audio 45664", "m=audio 30000");
+        assertEquals(rewritten, sd.toString());
+        assertFalse(sd.isMaterialized());
+
+        // anything else materializes the whole description, keeping the rewritten fields
+        assertEquals("jdoe", sd.getOrigin().getUsername());
+        assertTrue(sd.isMaterialized());
+        assertEquals(30000, sd.getMedia(0).getMediaPort());
+        assertEquals(new SDPSessionParser(rewritten).parse().toString(), sd.toString());
+
+        try {
+            factory.createLazySessionDescription("v=0\r\ns=-\r\n");
+            fail("A description without connection and media must be rejected");
+        } catch (SdpParseException e) {
+            // expected
+        }
+    }
+
+    public void testLazyRewriteBenchmark() throws Exception {
+
+        final SdpFactory factory = SdpFactory.getInstance();
+        int loops = 20000;
+        for (int i = 0; i < loops; i++) {
+            rewrite(factory.createSessionDescription(BODIES[i % BODIES.length]));
+            rewrite(factory.createLazySessionDescription(BODIES[i % BODIES.length]));
+        }
+
+        long init = System.currentTimeMillis();
+        for (int i = 0; i < loops; i++) {
+            rewrite(factory.createSessionDescription(BODIES[i % BODIES.length]));
+        }
+        System.out.println("Time full relay rewrite " + (System.currentTimeMillis() - init));
+
+        init = System.currentTimeMillis();
+        for (int i = 0; i < loops; i++) {
+            rewrite(factory.createLazySessionDescription(BODIES[i % BODIES.length]));
+        }
+        System.out.println("Time lazy relay rewrite " + (System.currentTimeMillis() - init));
+    }
+
+    public void testRewriter() throws Exception {
+
+        SdpRewriter rewriter = new SdpRewriter();
+        rewriter.setConnectionAddress("203.0.113.7");
+        rewriter.setPort(0, 30000);
+        rewriter.setRtcpPort(0, 30001);
+        rewriter.setCandidates(0, "1 1 UDP 2130706431 203.0.113.7 30000 typ host");
+        assertEquals(BODIES[2].replace("c=IN IP4 192.0.2.3", "c=IN IP4 203.0.113.7")
+                .replace("m=audio 45664", "m=audio 30000")
+                .replace("a=rtcp:45665 IN IP4 192.0.2.3", "a=rtcp:30001 IN IP4 203.0.113.7")
+                .replace("a=candidate:1 1 UDP 2130706431 10.0.1.1 8998 typ host\r\n" +
+                        "a=candidate:2 1 UDP 1694498815 192.0.2.3 45664 typ srflx raddr 10.0.1.1 rport 8998\r\n",
+                        "a=candidate:1 1 UDP 2130706431 203.0.113.7 30000 typ host\r\n"), rewriter.rewrite(BODIES[2]));
+
+        // a media address for a media without c= inserts one, other lines are untouched
+        rewriter = new SdpRewriter();
+        rewriter.setConnectionAddress(1, "2001:db8::1");
+        rewriter.setPort(1, 40000);
+        assertEquals(BODIES[1].replace("m=video 2232 RTP/AVP 31 34\r\n", "m=video 40000 RTP/AVP 31 34\r\nc=IN IP6 2001:db8::1\r\n"),
+                rewriter.rewrite(BODIES[1]));
+
+        // the session address applies to media c= lines as well, port counts are kept
+        rewriter = new SdpRewriter();
+        rewriter.setConnectionAddress("203.0.113.7");
+        rewriter.setPort(0, 30000);
+        final String body = BODIES[1].replace("m=audio 3456 ", "m=audio 3456/2 ");
+        assertEquals(body.replace("192.0.2.201", "203.0.113.7").replace("192.0.2.202", "203.0.113.7")
+                .replace("m=audio 3456/2 ", "m=audio 30000/2 "), rewriter.rewrite(body));
+
+        // a multicast ttl and address count are kept
+        rewriter = new SdpRewriter();
+        rewriter.setConnectionAddress("203.0.113.7");
+        final String multicast = BODIES[0].replace("c=IN IP4 192.0.2.101", "c=IN IP4 224.2.1.1/127/3");
+        assertEquals(BODIES[0].replace("c=IN IP4 192.0.2.101", "c=IN IP4 203.0.113.7/127/3"),
+                rewriter.rewrite(multicast));
+
+        final Message m = new Message("INVITE sip:bob@biloxi.com SIP/2.0\r\n" +
+                "Via: SIP/2.0/UDP pc33.atlanta.com;branch=z9hG4bK776asdhds\r\n" +
+                "To: Bob <sip:bob@biloxi.com>\r\n" +
+                "From: Alice <sip:alice@atlanta.com>;tag=1928301774\r\n" +
+                "Call-ID: a84b4c76e66710@pc33.atlanta.com\r\n" +
+                "CSeq: 314159 INVITE\r\n" +
+                "Content-Type: application/sdp;charset=UTF-8\r\n" +
+                "Content-Length: " + BODIES[0].length() + "\r\n" +
+                "\r\n" + BODIES[0]);
+        rewriter = new SdpRewriter();
+        rewriter.setConnectionAddress("198.51.100.250");
+        assertTrue(rewriter.rewrite(m));
+        assertEquals(m.getBody().length(), m.getContentLengthHeader().getContentLength());
+        assertEquals("application/sdp;charset=UTF-8", m.getContentTypeHeader().getValue());
+        assertEquals("198.51.100.250", SdpFactory.getInstance().createSessionDescription(
+                new Message(m.toString()).getBody()).getConnection().getAddress());
+    }
+
+    public void testRewriterBenchmark() throws Exception {
+
+        final SdpFactory factory = SdpFactory.getInstance();
+        final SdpRewriter rewriter = new SdpRewriter();
+        rewriter.setConnectionAddress("203.0.113.7");
+        rewriter.setPort(0, 30000);
+        rewriter.setPort(1, 30001);
+        int loops = 20000;
+        for (int i = 0; i < loops; i++) {
+            rewrite(factory.createSessionDescription(BODIES[i % BODIES.length]));
+            rewriter.rewrite(BODIES[i % BODIES.length]);
+        }
+
+        long init = System.currentTimeMillis();
+        for (int i = 0; i < loops; i++) {
+            rewrite(factory.createSessionDescription(BODIES[i % BODIES.length]));
+        }
+        System.out.println("Time parse and encode rewrite " + (System.currentTimeMillis() - init));
+
+        init = System.currentTimeMillis();
+        for (int i = 0; i < loops; i++) {
+            rewriter.rewrite(BODIES[i % BODIES.length]);
+        }
+        System.out.println("Time SdpRewriter rewrite " + (System.currentTimeMillis() - init));
+    }
+
+    public void testFieldCopies() throws Exception {
+
+        for (String body : BODIES) {
+            for (SDPField field : fields(body)) {
+                final SDPField copy = (SDPField) field.clone();
+                assertNotSame(field, copy);
+                assertEquals(field.getClass(), copy.getClass());
+                assertEquals(field, copy);
+                assertEquals(field.hashCode(), copy.hashCode());
+                assertEquals(field.encode(), copy.encode());
+                assertTrue(field.reflectionEquals(copy));
+            }
+            final SessionDescription sd = SdpFactory.getInstance().createSessionDescription(body);
+            assertEquals(sd.toString(), new SessionDescriptionImpl(sd).toString());
+        }
+
+        // formats are copied, not shared
+        final MediaField media = (MediaField) ParserFactory.createParser("m=audio 49170 RTP/AVP 0 8 97").parse();
+        final MediaField copy = (MediaField) media.clone();
+        copy.getFormats().remove(0);
+        assertEquals(3, media.getFormats().size());
+        assertFalse(media.equals(copy));
+
+        final ConnectionField connection = (ConnectionField) ParserFactory.createParser("c=IN IP4 192.0.2.1").parse();
+        final ConnectionField other = (ConnectionField) connection.clone();
+        other.getConnectionAddress().setPort(5);
+        assertFalse(connection.equals(other));
+        assertEquals(0, connection.getConnectionAddress().getPort());
+
+        // attribute names ignore case, flags have no value
+        final SDPField flag = ParserFactory.createParser("a=sendrecv").parse();
+        assertEquals(flag, ParserFactory.createParser("a=SendRecv").parse());
+        assertEquals(flag.hashCode(), ParserFactory.createParser("a=SendRecv").parse().hashCode());
+        assertFalse(flag.equals(ParserFactory.createParser("a=sendonly").parse()));
+        assertFalse(flag.equals(null));
+    }
+
+    public void testCloneEqualsBenchmark() throws Exception {
+
+        final SdpFactory factory = SdpFactory.getInstance();
+        final List<List<SDPField>> sessions = new ArrayList<List<SDPField>>();
+        final List<List<SDPField>> copies = new ArrayList<List<SDPField>>();
+        final SessionDescription[] descriptions = new SessionDescription[BODIES.length];
+        for (int i = 0; i < BODIES.length; i++) {
+            sessions.add(fields(BODIES[i]));
+            copies.add(fields(BODIES[i]));
+            descriptions[i] = factory.createSessionDescription(BODIES[i]);
+        }
+        int loops = 20000;
+        for (int i = 0; i < loops; i++) {
+            for (SDPField field : sessions.get(i % BODIES.length)) {
+                field.clone();
+            }
+            equal(sessions.get(i % BODIES.length), copies.get(i % BODIES.length), false);
+            equal(sessions.get(i % BODIES.length), copies.get(i % BODIES.length), true);
+            new SessionDescriptionImpl(descriptions[i % BODIES.length]);
+        }
+
+        long init = System.currentTimeMillis();
+        for (int i = 0; i < loops; i++) {
+            for (SDPField field : sessions.get(i % BODIES.length)) {
+                field.clone();
+            }
+        }
+        System.out.println("Time clone " + (System.currentTimeMillis() - init));
+
+        init = System.currentTimeMillis();
+        for (int i = 0; i < loops; i++) {
+            new SessionDescriptionImpl(descriptions[i % BODIES.length]);
+        }
+        System.out.println("Time session copy " + (System.currentTimeMillis() - init));
+
+        init = System.currentTimeMillis();
+        for (int i = 0; i < loops; i++) {
+            assertTrue(equal(sessions.get(i % BODIES.length), copies.get(i % BODIES.length), false));
+        }
+        System.out.println("Time equals " + (System.currentTimeMillis() - init));
+
+        init = System.currentTimeMillis();
+        for (int i = 0; i < loops; i++) {
+            assertTrue(equal(sessions.get(i % BODIES.length), copies.get(i % BODIES.length), true));
+        }
+        System.out.println("Time reflective equals " + (System.currentTimeMillis() - init));
+    }
+
+    private static List<SDPField> fields(final String body) throws ParseException {
+        final List<SDPField> fields = new ArrayList<SDPField>();
+        for (String line : body.split("\r?\n")) {
+            fields.add(ParserFactory.createParser(line).parse());
+        }
+        return fields;
+    }
+
+    private static boolean equal(final List<SDPField> a, final List<SDPField> b, final boolean reflective) {
+        for (int i = 0; i < a.size(); i++) {
+            if (reflective ? !a.get(i).reflectionEquals(b.get(i)) : !a.get(i).equals(b.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String rewrite(final SessionDescription sd) throws Exception {
+        if (sd instanceof LazySessionDescription) {
+            final LazySessionDescription lazy = (LazySessionDescription) sd;
+            for (int i = 0; i < lazy.getMediaCount(); i++) {
+                lazy.getConnection(i).setAddress("203.0.113.7");
+                lazy.getMedia(i).setMediaPort(30000 + i);
+            }
+        } else {
+            sd.getConnection().setAddress("203.0.113.7");
+            for (int i = 0; i < sd.getMediaDescriptions(false).size(); i++) {
+                final MediaDescription md = (MediaDescription) sd.getMediaDescriptions(false).get(i);
+                if (md.getConnection() != null) {
+                    md.getConnection().setAddress("203.0.113.7");
+                }
+                md.getMedia().setMediaPort(30000 + i);
+            }
+        }
+        return sd.toString();
+    }
+
+    public void testParseErrors() throws Exception {
+
+        try {
+            ParserFactory.createParser("no field here");
+            fail("A line without '=' must be rejected");
+        } catch (ParseException e) {
+            // expected
+        }
+        try {
+            ParserFactory.createParser("x=unknown");
+            fail("Unknown field types must be rejected");
+        } catch (ParseException e) {
+            // expected
+        }
+        assertTrue(ParserFactory.isSupported("a=sendrecv"));
+        assertTrue(ParserFactory.isSupported("A=sendrecv"));
+        assertEquals('a', ParserFactory.createParser("A=sendrecv").parse().getTypeChar());
+
+        // type letters are matched ignoring case
+        final String upper = BODIES[0].replace("\r\nc=", "\r\nC=").replace("\r\nm=", "\r\nM=");
+        assertEquals(new SDPAnnounceParser(BODIES[0]).parse().toString(), new SDPAnnounceParser(upper).parse().toString());
+        assertEquals(new SDPAnnounceParser(BODIES[0]).parse().toString(), new SDPSessionParser(upper).parse().toString());
+
+        // unknown field types are ignored, malformed known fields are not
+        final SdpFactory factory = SdpFactory.getInstance();
+        factory.createSessionDescription(BODIES[0].replace("s=-\r\n", "s=-\r\nx=ignored\r\n"));
+        try {
+            factory.createSessionDescription(BODIES[0].replace("m=audio 49172", "m=audio port"));
+            fail("A malformed media field must be reported");
+        } catch (SdpParseException e) {
+            assertEquals(6, e.getLineNumber());
+        }
+    }
+
+    public void testParserFactoryBenchmark() throws Exception {
+
+        final Map<String, Constructor> reflective = new HashMap<String, Constructor>();
+        for (String name : new String[]{"a:Attribute", "b:Bandwidth", "c:Connection", "e:Email", "i:Information",
+                "m:Media", "o:Origin", "p:Phone", "r:Repeat", "s:SessionName", "t:Time", "u:URI", "v:ProtoVersion"}) {
+            reflective.put(name.substring(0, 1), Class.forName("javax.sdp.parser." + name.substring(2) + "FieldParser")
+                    .getConstructor(String.class));
+        }
+
+        int loops = 20000;
+        int lines = 0;
+        long init = System.currentTimeMillis();
+        for (int i = 0; i < loops; i++) {
+            for (String line : BODIES[i % BODIES.length].split("\r?\n")) {
+                final SDPParser parser = (SDPParser) reflective.get(line.substring(0, 1)).newInstance(line);
+                lines += parser.parse() != null ? 1 : 0;
+            }
+        }
+        System.out.println("Time reflective parsers " + (System.currentTimeMillis() - init) + " (" + lines + " lines)");
+
+        lines = 0;
+        init = System.currentTimeMillis();
+        for (int i = 0; i < loops; i++) {
+            for (String line : BODIES[i % BODIES.length].split("\r?\n")) {
+                lines += ParserFactory.createParser(line).parse() != null ? 1 : 0;
+            }
+        }
+        System.out.println("Time switch parsers " + (System.currentTimeMillis() - init) + " (" + lines + " lines)");
+
+        final SdpFactory factory = SdpFactory.getInstance();
+        // warm up both session parsers before timing them
+        for (int i = 0; i < loops; i++) {
+            new SDPAnnounceParser(BODIES[i % BODIES.length]).parse();
+            factory.createSessionDescription(BODIES[i % BODIES.length]);
+        }
+
+        init = System.currentTimeMillis();
+        for (int i = 0; i < loops; i++) {
+            new SDPAnnounceParser(BODIES[i % BODIES.length]).parse();
+        }
+        System.out.println("Time SDPAnnounceParser " + (System.currentTimeMillis() - init));
+
+        init = System.currentTimeMillis();
+        for (int i = 0; i < loops; i++) {
+            factory.createSessionDescription(BODIES[i % BODIES.length]);
+        }
+        System.out.println("Time createSessionDescription " + (System.currentTimeMillis() - init));
+    }
+}
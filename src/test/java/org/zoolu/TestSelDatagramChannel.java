@@ -0,0 +1,214 @@
+package org.zoolu;
+
+import junit.framework.TestCase;
+import org.xmpp.jnodes.nio.ByteBufferPool;
+import org.xmpp.jnodes.nio.DatagramBatchListener;
+import org.xmpp.jnodes.nio.DatagramListener;
+import org.xmpp.jnodes.nio.DispatchExecutors;
+import org.xmpp.jnodes.nio.LatencyHistogram;
+import org.xmpp.jnodes.nio.ListenerDatagramChannel;
+import org.xmpp.jnodes.nio.SelDatagramChannel;
+import org.xmpp.jnodes.nio.SelectorLoopGroup;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author bhlangonijr
+ */
+public class TestSelDatagramChannel extends TestCase {
+
+    private static final int PACKETS = 200;
+
+    public void testBufferPool() {
+
+        final ByteBufferPool pool = new ByteBufferPool(9000, 4, 8);
+
+        final ByteBuffer a = pool.acquire();
+        assertEquals(9000, a.remaining());
+        assertEquals(1, pool.getMisses());
+        assertEquals(3, pool.getAvailable());
+
+        final ByteBuffer b = pool.acquire();
+        assertEquals(1, pool.getHits());
+        assertEquals(2, pool.getInUse());
+
+        a.put((byte) 1);
+        b.put((byte) 2);
+        assertEquals(1, a.get(0));
+
+        assertTrue(pool.release(a));
+        assertTrue(pool.release(b));
+        assertEquals(0, pool.getInUse());
+        assertEquals(4, pool.getAvailable());
+        assertEquals(4, pool.getAllocated());
+
+        // double and foreign releases are ignored
+        assertFalse(pool.release(a));
+        assertFalse(pool.release(ByteBuffer.allocateDirect(9000)));
+        assertEquals(0, pool.getInUse());
+        assertEquals(4, pool.getAvailable());
+        final ByteBuffer c = pool.acquire();
+        assertNotSame(c, pool.acquire());
+
+        // past maxBuffers buffers are standalone and not taken back
+        for (int i = 0; i < 6; i++) {
+            pool.acquire();
+        }
+        assertEquals(8, pool.getInUse());
+        final ByteBuffer standalone = pool.acquire();
+        assertEquals(8, pool.getAllocated());
+        assertFalse(pool.release(standalone));
+        assertTrue(pool.release(c));
+        assertEquals(7, pool.getInUse());
+    }
+
+    public void testLatencyHistogram() {
+
+        final LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getPercentile(99));
+
+        for (int i = 1; i <= 100000; i++) {
+            h.record(i * 1000L);
+        }
+
+        assertEquals(100000, h.getCount());
+        assertEquals(100000000L, h.getMax());
+        assertEquals(50000000d, h.getPercentile(50), 50000000d * 0.07);
+        assertEquals(99000000d, h.getPercentile(99), 99000000d * 0.07);
+        assertEquals(h.getMax(), h.getPercentile(100));
+
+        h.reset();
+        assertEquals(0, h.getCount());
+    }
+
+    public void testOrderedDispatch() throws Exception {
+
+        final SelectorLoopGroup group = new SelectorLoopGroup(1);
+        final CountDownLatch latch = new CountDownLatch(PACKETS);
+        final List<Integer> received = Collections.synchronizedList(new ArrayList<Integer>());
+
+        final SelDatagramChannel rx = SelDatagramChannel.open(new DatagramListener() {
+            public void datagramReceived(ListenerDatagramChannel channel, ByteBuffer buffer, SocketAddress address) {
+                received.add(buffer.getInt(0));
+                channel.release(buffer);
+                latch.countDown();
+            }
+        }, new InetSocketAddress("127.0.0.1", 0), group, DispatchExecutors.ordered(DispatchExecutors.threadPerTask()));
+        final SelDatagramChannel tx = SelDatagramChannel.open(null, new InetSocketAddress("127.0.0.1", 0), group, DispatchExecutors.INLINE);
+
+        final SocketAddress target = new InetSocketAddress("127.0.0.1", rx.getLocalPort());
+        for (int i = 0; i < PACKETS; i++) {
+            final ByteBuffer b = ByteBuffer.allocate(4);
+            b.putInt(0, i);
+            tx.send(b, target);
+            if (i % 20 == 0) {
+                Thread.sleep(5);
+            }
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < received.size(); i++) {
+            assertTrue(received.get(i) > received.get(i - 1));
+        }
+
+        rx.close();
+        tx.close();
+        group.shutdown();
+    }
+
+    public void testBatch() throws Exception {
+
+        final SelectorLoopGroup group = new SelectorLoopGroup(1);
+        final CountDownLatch latch = new CountDownLatch(PACKETS);
+        final AtomicInteger batches = new AtomicInteger(0);
+
+        final SelDatagramChannel rx = SelDatagramChannel.open(new DatagramBatchListener() {
+            public void datagramsReceived(ListenerDatagramChannel channel, ByteBuffer[] buffers, SocketAddress[] addresses, int count) {
+                batches.incrementAndGet();
+                for (int i = 0; i < count; i++) {
+                    channel.release(buffers[i]);
+                    latch.countDown();
+                }
+            }
+
+            public void datagramReceived(ListenerDatagramChannel channel, ByteBuffer buffer, SocketAddress address) {
+                fail("Batch listener should not get single datagrams");
+            }
+        }, new InetSocketAddress("127.0.0.1", 0), group, DispatchExecutors.INLINE);
+        rx.setBatchSize(32);
+        final SelDatagramChannel tx = SelDatagramChannel.open(null, new InetSocketAddress("127.0.0.1", 0), group);
+
+        final SocketAddress target = new InetSocketAddress("127.0.0.1", rx.getLocalPort());
+        final ByteBuffer[] srcs = new ByteBuffer[20];
+        final SocketAddress[] targets = new SocketAddress[20];
+        for (int i = 0; i < PACKETS; i += srcs.length) {
+            for (int j = 0; j < srcs.length; j++) {
+                srcs[j] = ByteBuffer.wrap(("batch" + (i + j)).getBytes());
+                targets[j] = target;
+            }
+            assertEquals(srcs.length, tx.sendBatch(srcs, targets, srcs.length));
+            Thread.sleep(5);
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(batches.get() < PACKETS);
+
+        rx.close();
+        tx.close();
+        group.shutdown();
+    }
+
+    public void testLoopGroup() throws Exception {
+
+        final SelectorLoopGroup group = new SelectorLoopGroup(2);
+        final LatencyHistogram histogram = new LatencyHistogram();
+        group.setLatencyHistogram(histogram);
+        final CountDownLatch latch = new CountDownLatch(PACKETS * 2);
+
+        final DatagramListener listener = new DatagramListener() {
+            public void datagramReceived(ListenerDatagramChannel channel, ByteBuffer buffer, SocketAddress address) {
+                channel.release(buffer);
+                latch.countDown();
+            }
+        };
+
+        final SelDatagramChannel a = SelDatagramChannel.open(listener, new InetSocketAddress("127.0.0.1", 0), group);
+        final SelDatagramChannel b = SelDatagramChannel.open(listener, new InetSocketAddress("127.0.0.1", 0), group);
+
+        assertNotSame(a.getLoop(), b.getLoop());
+
+        final SocketAddress addrA = new InetSocketAddress("127.0.0.1", a.getLocalPort());
+        final SocketAddress addrB = new InetSocketAddress("127.0.0.1", b.getLocalPort());
+
+        for (int i = 0; i < PACKETS; i++) {
+            a.send(ByteBuffer.wrap(("ping" + i).getBytes()), addrB);
+            b.send(ByteBuffer.wrap(("pong" + i).getBytes()), addrA);
+            if (i % 20 == 0) {
+                Thread.sleep(5);
+            }
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        final ByteBufferPool pool = group.getBufferPool();
+        assertTrue(pool.getHits() > 0);
+        assertTrue(pool.getMisses() < PACKETS);
+        assertEquals(0, pool.getInUse());
+
+        assertEquals(PACKETS * 2, histogram.getCount());
+        System.out.println("Ready to listener latency " + histogram);
+
+        a.close();
+        b.close();
+        group.shutdown();
+    }
+
+}